@@ -0,0 +1,325 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.openbase.display.DisplayView.logger;
+
+/**
+ * Manages the persistent user data directory shared by all web engines of a display process.
+ * <p>
+ * The root directory provides a fixed set of slot directories. Each display process locks one slot and all of its tabs share it,
+ * so cached resources and local storage are shared between tabs and survive tab recycling and process restarts.
+ * Concurrent display processes on the same host use different slots, because a web engine can not share its user data directory with other processes.
+ * <p>
+ * While acquiring a slot, entries of the root directory which are not slots are swept as orphans, e.g. per tab directories of former versions.
+ * An orphan is only removed if it is provably unused: either the user data lock a web engine holds on its directory can be acquired,
+ * or the entry carries no such lock and was not modified for {@link #ORPHAN_MAX_AGE}.
+ * Afterwards the top level entries of all unused slots are trimmed in least recently used order until the overall size fits into the configured limit.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CacheDirectory {
+
+    /**
+     * The maximal amount of display processes which can use the cache at the same time.
+     */
+    public static final int MAX_SLOTS = 8;
+
+    /**
+     * Time in milliseconds after which an unlocked orphan is considered stale.
+     */
+    public static final long ORPHAN_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The lock file a web engine creates within its user data directory while using it.
+     */
+    private static final String USER_DATA_LOCK_FILE = ".lock";
+
+    private static final String SLOT_PREFIX = "slot-";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final Pattern SLOT_PATTERN = Pattern.compile(SLOT_PREFIX + "[0-9]+(" + Pattern.quote(LOCK_SUFFIX) + ")?");
+
+    private final File rootDirectory;
+    private final long maxSize;
+    private File slotDirectory;
+    private FileLock lock;
+
+    /**
+     * @param rootDirectory the directory containing all slots.
+     * @param maxSize       the maximal size of all slots in bytes, 0 disables the limit.
+     */
+    public CacheDirectory(final File rootDirectory, final long maxSize) {
+        this.rootDirectory = rootDirectory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Locks a free slot for this process, sweeps orphans and trims the cache.
+     *
+     * @return the user data directory to use for all web engines of this process.
+     *
+     * @throws CouldNotPerformException is thrown if no slot is available.
+     */
+    public synchronized File acquire() throws CouldNotPerformException {
+        if (slotDirectory != null) {
+            return slotDirectory;
+        }
+
+        try {
+            FileUtils.forceMkdir(rootDirectory);
+        } catch (IOException ex) {
+            throw new CouldNotPerformException("Could not create " + rootDirectory + "!", ex);
+        }
+
+        sweepOrphans();
+
+        // lock all free slots, so they can be trimmed safely, and keep the first one.
+        final List<FileLock> freeSlotLocks = new ArrayList<>();
+        final List<File> freeSlots = new ArrayList<>();
+        try {
+            for (int i = 0; i < MAX_SLOTS; i++) {
+                final FileLock slotLock = tryLock(new File(rootDirectory, SLOT_PREFIX + i + LOCK_SUFFIX));
+                if (slotLock == null) {
+                    continue;
+                }
+                final File slot = new File(rootDirectory, SLOT_PREFIX + i);
+                if (lock == null) {
+                    lock = slotLock;
+                    slotDirectory = slot;
+                } else {
+                    freeSlotLocks.add(slotLock);
+                }
+                freeSlots.add(slot);
+            }
+
+            if (slotDirectory == null) {
+                throw new NotAvailableException("free cache slot in " + rootDirectory);
+            }
+            trim(freeSlots);
+            FileUtils.forceMkdir(slotDirectory);
+            logger.info("use " + slotDirectory + " as user data directory.");
+            return slotDirectory;
+        } catch (IOException ex) {
+            throw new CouldNotPerformException("Could not acquire cache slot!", ex);
+        } finally {
+            for (final FileLock freeSlotLock : freeSlotLocks) {
+                close(freeSlotLock.channel());
+            }
+        }
+    }
+
+    /**
+     * Trims the slot of this process and releases its lock. Needs to be called after all web engines using the slot are disposed.
+     */
+    public synchronized void release() {
+        if (slotDirectory == null) {
+            return;
+        }
+        final List<File> ownSlot = new ArrayList<>();
+        ownSlot.add(slotDirectory);
+        trim(ownSlot);
+        close(lock.channel());
+        lock = null;
+        slotDirectory = null;
+    }
+
+    /**
+     * Removes all entries of the root directory which do not belong to a slot and are not used anymore.
+     */
+    private void sweepOrphans() {
+        final File[] entries = rootDirectory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (final File entry : entries) {
+            if (SLOT_PATTERN.matcher(entry.getName()).matches()) {
+                continue;
+            }
+            try {
+                if (sweepOrphan(entry)) {
+                    logger.debug("Orphaned cache entry " + entry + " removed.");
+                }
+            } catch (IOException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not remove orphaned cache entry " + entry + "!", ex), logger);
+            }
+        }
+    }
+
+    /**
+     * @return true if the orphan was removed, false if it might still be in use.
+     */
+    private static boolean sweepOrphan(final File orphan) throws IOException {
+        final File lockFile = new File(orphan, USER_DATA_LOCK_FILE);
+        if (!lockFile.isFile()) {
+            if (System.currentTimeMillis() - lastModification(orphan) < ORPHAN_MAX_AGE) {
+                return false;
+            }
+            FileUtils.forceDelete(orphan);
+            return true;
+        }
+
+        // the web engine using the directory holds its lock, so a lockable directory is unused.
+        final FileLock orphanLock = tryLock(lockFile);
+        if (orphanLock == null) {
+            return false;
+        }
+        try {
+            final File[] files = orphan.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    if (!file.equals(lockFile)) {
+                        FileUtils.forceDelete(file);
+                    }
+                }
+            }
+        } finally {
+            close(orphanLock.channel());
+        }
+        FileUtils.forceDelete(orphan);
+        return true;
+    }
+
+    /**
+     * @return the latest modification time of the given file or of any file within the given directory.
+     */
+    private static long lastModification(final File entry) throws IOException {
+        try (Stream<Path> stream = Files.walk(entry.toPath())) {
+            return stream.mapToLong(path -> path.toFile().lastModified()).max().orElse(0);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries of the given slots until the size of all slots fits into the limit.
+     * The storage files of a web engine depend on each other, so the top level entries of a slot, e.g. its local storage or its http cache, are removed as a whole.
+     * Slots used by other processes are taken into account for the overall size but are never modified.
+     */
+    private void trim(final List<File> trimmableSlots) {
+        if (maxSize <= 0) {
+            return;
+        }
+
+        try {
+            long size = FileUtils.sizeOfDirectory(rootDirectory);
+            if (size <= maxSize) {
+                return;
+            }
+
+            final List<File> entries = new ArrayList<>();
+            for (final File slot : trimmableSlots) {
+                final File[] slotEntries = slot.listFiles();
+                if (slotEntries == null) {
+                    continue;
+                }
+                for (final File entry : slotEntries) {
+                    if (!entry.getName().equals(USER_DATA_LOCK_FILE)) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            final Map<File, Long> lastAccessMap = new HashMap<>();
+            for (final File entry : entries) {
+                lastAccessMap.put(entry, lastAccess(entry));
+            }
+            entries.sort(Comparator.comparing(lastAccessMap::get));
+
+            for (final File entry : entries) {
+                if (size <= maxSize) {
+                    break;
+                }
+                final long entrySize = FileUtils.sizeOf(entry);
+                FileUtils.forceDelete(entry);
+                size -= entrySize;
+            }
+            logger.debug("Cache trimmed to " + (size / 1024 / 1024) + "MB.");
+        } catch (IOException | UncheckedIOException | IllegalArgumentException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not trim cache!", ex), logger);
+        }
+    }
+
+    /**
+     * @return the latest access time of the given file or of any file within the given directory.
+     */
+    private static long lastAccess(final File entry) throws IOException {
+        try (Stream<Path> stream = Files.walk(entry.toPath())) {
+            return stream.mapToLong(CacheDirectory::lastAccess).max().orElse(0);
+        }
+    }
+
+    private static long lastAccess(final Path file) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return Math.max(attributes.lastAccessTime().toMillis(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    /**
+     * @return the lock of the given file, or null if the file is locked by another process. The lock is released by closing its channel.
+     */
+    private static FileLock tryLock(final File lockFile) throws IOException {
+        final FileChannel channel = new RandomAccessFile(lockFile, "rw").getChannel();
+        try {
+            final FileLock fileLock = channel.tryLock();
+            if (fileLock != null) {
+                return fileLock;
+            }
+        } catch (OverlappingFileLockException ex) {
+            // slot is already used by this process.
+        }
+        close(channel);
+        return null;
+    }
+
+    private static void close(final FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not release cache lock!", ex), logger);
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.application.Platform;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+
+import static org.openbase.display.DisplayView.logger;
+
+/**
+ * Schedules display commands for execution on the fx application thread.
+ * <p>
+ * Each command can be assigned to a slot. A command which is still pending when a later command of the same slot and the same or a higher priority is submitted
+ * is never executed, instead its future is completed with a {@link CommandSupersededException}, so only the latest command per slot is applied.
+ * A less urgent command never supersedes a more urgent one, e.g. routine content updates never drop a pending error text.
+ * Commands without slot are always executed. Commands submitted from the fx application thread are executed immediately and never supersede pending commands,
+ * because those are applied after them.
+ * <p>
+ * Pending commands are executed in passes of at most {@link #MAX_COMMANDS_PER_PASS} commands, so the fx thread stays responsive during bursts
+ * and at most one pass is queued at any time. Each pass executes the most urgent commands first, see {@link Priority}.
+ * {@link Priority#CONTROL} commands are barriers: all commands submitted before are executed before and all commands submitted after are executed after them.
+ * <p>
+ * The queue is bounded. If it is full, a more urgent command replaces the least urgent pending one, which is rejected.
+ * Otherwise the submitting thread is blocked for at most {@link #MAX_SUBMIT_DELAY} milliseconds until a pass frees capacity,
+ * which slows down remote senders, and the command is rejected if the queue is still full.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CommandQueue {
+
+    public static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * The maximal amount of commands executed per fx pass.
+     */
+    public static final int MAX_COMMANDS_PER_PASS = 16;
+
+    /**
+     * The maximal time in milliseconds a submitting thread is blocked while the queue is full.
+     */
+    public static final long MAX_SUBMIT_DELAY = 1000;
+
+    /**
+     * The urgency of a command, in ascending order.
+     */
+    public enum Priority {
+        CONTENT,
+        INFO,
+        WARN,
+        ERROR,
+        CONTROL
+    }
+
+    private static final Comparator<Command<?>> EXECUTION_ORDER = Comparator
+            .<Command<?>>comparingLong(command -> command.epoch)
+            .thenComparing(command -> command.priority == Priority.CONTROL)
+            .thenComparing(command -> command.priority, Comparator.reverseOrder())
+            .thenComparingLong(command -> command.sequence);
+
+    private final int capacity;
+    private final Executor dispatcher;
+    private final BooleanSupplier dispatchThreadTest;
+    private final Map<Object, Command<?>> pendingCommands;
+    private boolean passScheduled;
+    private long sequence, epoch;
+    private long submitted, executed, coalesced, rejected, delayed, passes, dequeued, totalWaitTime, maxWaitTime;
+    private int maxPending;
+
+    public CommandQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximal amount of pending commands.
+     */
+    public CommandQueue(final int capacity) {
+        this(capacity, Platform::runLater, Platform::isFxApplicationThread);
+    }
+
+    /**
+     * @param capacity           the maximal amount of pending commands.
+     * @param dispatcher         executes the passes, which is the fx application thread by default.
+     * @param dispatchThreadTest tests if the current thread is the one of the dispatcher, so a submitted command has to be executed immediately.
+     */
+    CommandQueue(final int capacity, final Executor dispatcher, final BooleanSupplier dispatchThreadTest) {
+        this.capacity = Math.max(1, capacity);
+        this.dispatcher = dispatcher;
+        this.dispatchThreadTest = dispatchThreadTest;
+        this.pendingCommands = new LinkedHashMap<>();
+    }
+
+    /**
+     * Submits the given command.
+     *
+     * @param slot     the slot of the command or null if the command should never be superseded.
+     * @param priority the urgency of the command.
+     * @param callable the command to execute on the fx application thread.
+     * @param <V>      the result type of the command.
+     *
+     * @return a future providing the result of the command. It fails with a {@link CommandSupersededException} if a later command of the same slot and at least the same priority has replaced it,
+     * or with a {@link RejectedExecutionException} if the queue was full.
+     */
+    public <V> CompletableFuture<V> submit(final Object slot, final Priority priority, final Callable<V> callable) {
+        final boolean inline = dispatchThreadTest.getAsBoolean();
+        final Command<V> command;
+        final List<Command<?>> supersededCommands = new ArrayList<>();
+        Command<?> shedCommand = null;
+        boolean accepted = true;
+        boolean schedulePass = false;
+        synchronized (this) {
+            submitted++;
+
+            // an inline command is executed right away, so pending commands are applied after it and must not be dropped.
+            if (!inline) {
+                supersedePending(slot, priority, supersededCommands);
+                if (pendingCommands.size() >= capacity) {
+                    shedCommand = shedLessUrgent(priority);
+                    if (shedCommand == null) {
+                        accepted = awaitCapacity();
+
+                        // the monitor was released while waiting, so commands of the same slot may have been queued meanwhile.
+                        if (accepted) {
+                            supersedePending(slot, priority, supersededCommands);
+                        }
+                    }
+                }
+            }
+
+            // the command is created after waiting, so it is ordered after all commands queued meanwhile.
+            command = new Command<>(slot, priority, epoch, sequence++, callable);
+
+            if (inline) {
+                executed++;
+            } else {
+                if (accepted) {
+                    pendingCommands.put(command.getKey(), command);
+                    maxPending = Math.max(maxPending, pendingCommands.size());
+                    if (priority == Priority.CONTROL) {
+                        epoch++;
+                    }
+                    schedulePass = !passScheduled;
+                    passScheduled = true;
+                } else {
+                    rejected++;
+                }
+            }
+        }
+
+        for (final Command<?> supersededCommand : supersededCommands) {
+            supersededCommand.supersede();
+        }
+        if (shedCommand != null) {
+            shedCommand.reject("dropped in favour of more urgent " + command);
+        }
+
+        if (inline) {
+            command.execute();
+        } else if (!accepted) {
+            command.reject("command queue is full");
+        } else if (schedulePass) {
+            schedulePass();
+        }
+        return command.future;
+    }
+
+    /**
+     * Removes the pending commands of the given slot which are at most as urgent as the given priority.
+     */
+    private void supersedePending(final Object slot, final Priority priority, final List<Command<?>> supersededCommands) {
+        if (slot == null) {
+            return;
+        }
+        for (final Priority supersededPriority : Priority.values()) {
+            if (supersededPriority.compareTo(priority) > 0) {
+                break;
+            }
+            final Command<?> supersededCommand = pendingCommands.remove(new SlotKey(slot, supersededPriority));
+            if (supersededCommand != null) {
+                supersededCommands.add(supersededCommand);
+                coalesced++;
+            }
+        }
+    }
+
+    /**
+     * Removes the least urgent and most recent pending command if it is less urgent than the given priority.
+     */
+    private Command<?> shedLessUrgent(final Priority priority) {
+        Command<?> leastUrgentCommand = null;
+        for (final Command<?> pendingCommand : pendingCommands.values()) {
+            if (leastUrgentCommand == null || pendingCommand.priority.compareTo(leastUrgentCommand.priority) <= 0) {
+                leastUrgentCommand = pendingCommand;
+            }
+        }
+        if (leastUrgentCommand == null || leastUrgentCommand.priority.compareTo(priority) >= 0) {
+            return null;
+        }
+        pendingCommands.remove(leastUrgentCommand.getKey());
+        rejected++;
+        return leastUrgentCommand;
+    }
+
+    /**
+     * Blocks the submitting thread until a pass frees capacity.
+     *
+     * @return true if capacity is available.
+     */
+    private boolean awaitCapacity() {
+        delayed++;
+        final long deadline = System.currentTimeMillis() + MAX_SUBMIT_DELAY;
+        long remainingTime;
+        try {
+            while (pendingCommands.size() >= capacity && (remainingTime = deadline - System.currentTimeMillis()) > 0) {
+                wait(remainingTime);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return pendingCommands.size() < capacity;
+    }
+
+    private void schedulePass() {
+        try {
+            dispatcher.execute(this::executePass);
+        } catch (Exception ex) {
+            final List<Command<?>> commands;
+            synchronized (this) {
+                commands = new ArrayList<>(pendingCommands.values());
+                pendingCommands.clear();
+                passScheduled = false;
+                notifyAll();
+            }
+            for (final Command<?> command : commands) {
+                command.future.completeExceptionally(new CouldNotPerformException("Could not perform task!", ex));
+            }
+        }
+    }
+
+    private void executePass() {
+        final List<Command<?>> commands;
+        final boolean remaining;
+        synchronized (this) {
+            final List<Command<?>> pendingList = new ArrayList<>(pendingCommands.values());
+            pendingList.sort(EXECUTION_ORDER);
+            commands = new ArrayList<>(pendingList.subList(0, Math.min(pendingList.size(), MAX_COMMANDS_PER_PASS)));
+
+            final long timestamp = System.currentTimeMillis();
+            for (final Command<?> command : commands) {
+                pendingCommands.remove(command.getKey());
+                final long waitTime = timestamp - command.timestamp;
+                totalWaitTime += waitTime;
+                maxWaitTime = Math.max(maxWaitTime, waitTime);
+            }
+            executed += commands.size();
+            dequeued += commands.size();
+            passes++;
+            remaining = !pendingCommands.isEmpty();
+            passScheduled = remaining;
+            notifyAll();
+        }
+
+        for (final Command<?> command : commands) {
+            command.execute();
+        }
+
+        if (remaining) {
+            schedulePass();
+        }
+    }
+
+    /**
+     * @return a snapshot of the current queue usage.
+     */
+    public synchronized Stats stats() {
+        return new Stats(pendingCommands.size(), maxPending, capacity, submitted, executed, coalesced, rejected, delayed, passes, dequeued == 0 ? 0 : totalWaitTime / dequeued, maxWaitTime);
+    }
+
+    private static class Command<V> {
+
+        private final Object slot;
+        private final Priority priority;
+        private final long epoch, sequence, timestamp;
+        private final Callable<V> callable;
+        private final CompletableFuture<V> future;
+
+        private Command(final Object slot, final Priority priority, final long epoch, final long sequence, final Callable<V> callable) {
+            this.slot = slot;
+            this.priority = priority;
+            this.epoch = epoch;
+            this.sequence = sequence;
+            this.timestamp = System.currentTimeMillis();
+            this.callable = callable;
+            this.future = new CompletableFuture<>();
+        }
+
+        /**
+         * @return the key of the command within the pending commands. A command without slot is its own key, so it is never replaced.
+         */
+        private Object getKey() {
+            return slot != null ? new SlotKey(slot, priority) : this;
+        }
+
+        private void execute() {
+            try {
+                future.complete(callable.call());
+            } catch (Exception ex) {
+                future.completeExceptionally(ExceptionPrinter.printHistoryAndReturnThrowable(new CouldNotPerformException("Could not perform task!", ex), logger));
+            }
+        }
+
+        private void supersede() {
+            future.completeExceptionally(new CommandSupersededException(this + " superseded by a later request."));
+        }
+
+        private void reject(final String reason) {
+            logger.warn("Reject " + this + ": " + reason);
+            future.completeExceptionally(new RejectedExecutionException(this + " rejected, " + reason + "."));
+        }
+
+        @Override
+        public String toString() {
+            return "Command[" + (slot != null ? slot + ", " : "") + priority + "]";
+        }
+    }
+
+    /**
+     * Identifies the pending command of a slot per priority.
+     */
+    private static class SlotKey {
+
+        private final Object slot;
+        private final Priority priority;
+
+        private SlotKey(final Object slot, final Priority priority) {
+            this.slot = slot;
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof SlotKey)) {
+                return false;
+            }
+            final SlotKey slotKey = (SlotKey) object;
+            return slot.equals(slotKey.slot) && priority == slotKey.priority;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * slot.hashCode() + priority.hashCode();
+        }
+    }
+
+    public static class Stats {
+
+        private final int pending, maxPending, capacity;
+        private final long submitted, executed, coalesced, rejected, delayed, passes, averageWaitTime, maxWaitTime;
+
+        public Stats(final int pending, final int maxPending, final int capacity, final long submitted, final long executed, final long coalesced, final long rejected, final long delayed, final long passes, final long averageWaitTime, final long maxWaitTime) {
+            this.pending = pending;
+            this.maxPending = maxPending;
+            this.capacity = capacity;
+            this.submitted = submitted;
+            this.executed = executed;
+            this.coalesced = coalesced;
+            this.rejected = rejected;
+            this.delayed = delayed;
+            this.passes = passes;
+            this.averageWaitTime = averageWaitTime;
+            this.maxWaitTime = maxWaitTime;
+        }
+
+        /**
+         * @return the current queue depth.
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return the highest queue depth observed so far.
+         */
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getExecuted() {
+            return executed;
+        }
+
+        /**
+         * @return the amount of commands which were superseded by a later command of the same slot and therefore never executed.
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        /**
+         * @return the amount of commands which were rejected because the queue was full.
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return the amount of submissions which were blocked because the queue was full.
+         */
+        public long getDelayed() {
+            return delayed;
+        }
+
+        /**
+         * @return the amount of passes executed on the fx application thread.
+         */
+        public long getPasses() {
+            return passes;
+        }
+
+        /**
+         * @return the average time in milliseconds a queued command waited for its execution.
+         */
+        public long getAverageWaitTime() {
+            return averageWaitTime;
+        }
+
+        /**
+         * @return the maximal time in milliseconds a queued command waited for its execution.
+         */
+        public long getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        @Override
+        public String toString() {
+            return CommandQueue.class.getSimpleName() + "[pending:" + pending + "/" + capacity + ", maxPending:" + maxPending + ", submitted:" + submitted + ", executed:" + executed
+                    + ", coalesced:" + coalesced + ", rejected:" + rejected + ", delayed:" + delayed + ", passes:" + passes + ", averageWait:" + averageWaitTime + "ms, maxWait:" + maxWaitTime + "ms]";
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Signals that a display command was never applied because a later command replaced it before it was executed.
+ * Unlike a failure this is the expected outcome of frequent updates, since the display applies the later command instead.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CommandSupersededException extends CancellationException {
+
+    public CommandSupersededException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,326 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.VerificationFailedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A template which is parsed once into literal and variable segments, so rendering only needs a single pass over the segments.
+ * <p>
+ * Variables are written as {@code ${NAME}}. During compilation the markup context of each variable is detected:
+ * Variables placed in the text of the document are bound, see {@link RenderedTemplate}.
+ * Values of variables in text, attributes, title and textarea elements are html escaped,
+ * while values placed within comments, style and script elements are inserted as they are.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CompiledTemplate {
+
+    private static final String VARIABLE_PREFIX = "${";
+    private static final String VARIABLE_SUFFIX = "}";
+    private static final Pattern BINDABLE_VARIABLE_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    /**
+     * Elements whose content is not parsed as markup. Character references are only decoded within the escapable ones.
+     */
+    private static final String[] RAW_TEXT_ELEMENTS = {"style", "script"};
+    private static final String[] ESCAPABLE_RAW_TEXT_ELEMENTS = {"title", "textarea"};
+
+    /**
+     * Assumed average length of a variable value used to presize the render buffer.
+     */
+    private static final int AVERAGE_VALUE_LENGTH = 32;
+
+    private enum Context {
+        TEXT,
+        TAG,
+        COMMENT,
+        RAW_TEXT,
+        ESCAPABLE_RAW_TEXT
+    }
+
+    private final String templateId;
+    private final Segment[] segments;
+    private final int estimatedLength;
+
+    private CompiledTemplate(final String templateId, final Segment[] segments, final int estimatedLength) {
+        this.templateId = templateId;
+        this.segments = segments;
+        this.estimatedLength = estimatedLength;
+    }
+
+    /**
+     * Parses the given template source.
+     *
+     * @param templateId the identity of the template.
+     * @param source     the template source.
+     *
+     * @return the compiled template.
+     *
+     * @throws VerificationFailedException is thrown if the source contains an unterminated variable.
+     */
+    public static CompiledTemplate compile(final String templateId, final String source) throws VerificationFailedException {
+        final List<Segment> segments = new ArrayList<>();
+        final Set<String> unboundNames = new HashSet<>();
+        final StringBuilder literal = new StringBuilder();
+
+        Context context = Context.TEXT;
+        String rawTextElement = null;
+        String pendingRawTextElement = null;
+        boolean pendingEscapable = false;
+        int index = 0;
+        while (index < source.length()) {
+
+            // parse variable
+            if (source.startsWith(VARIABLE_PREFIX, index)) {
+                final int end = source.indexOf(VARIABLE_SUFFIX, index + VARIABLE_PREFIX.length());
+                if (end < 0) {
+                    throw new VerificationFailedException("Variable at index " + index + " of Template[" + templateId + "] is not terminated!");
+                }
+                final String name = source.substring(index + VARIABLE_PREFIX.length(), end);
+                if (literal.length() > 0) {
+                    segments.add(new Segment(literal.toString(), null, context, false));
+                    literal.setLength(0);
+                }
+                final boolean bindable = context == Context.TEXT && BINDABLE_VARIABLE_NAME.matcher(name).matches();
+                if (!bindable) {
+                    unboundNames.add(name);
+                }
+                segments.add(new Segment(null, name, context, bindable));
+                index = end + VARIABLE_SUFFIX.length();
+                continue;
+            }
+
+            // track the markup context
+            switch (context) {
+                case COMMENT:
+                    if (source.startsWith("-->", index - 2)) {
+                        context = Context.TEXT;
+                    }
+                    break;
+                case TAG:
+                    if (source.charAt(index) == '>') {
+                        rawTextElement = pendingRawTextElement;
+                        context = rawTextElement == null ? Context.TEXT : pendingEscapable ? Context.ESCAPABLE_RAW_TEXT : Context.RAW_TEXT;
+                        pendingRawTextElement = null;
+                    }
+                    break;
+                case RAW_TEXT:
+                case ESCAPABLE_RAW_TEXT:
+                    if (source.regionMatches(true, index, "</" + rawTextElement, 0, rawTextElement.length() + 2)) {
+                        rawTextElement = null;
+                        context = Context.TAG;
+                    }
+                    break;
+                case TEXT:
+                default:
+                    if (source.startsWith("<!--", index)) {
+                        context = Context.COMMENT;
+                    } else if (source.charAt(index) == '<') {
+                        context = Context.TAG;
+                        pendingRawTextElement = startsWithElement(source, index + 1, RAW_TEXT_ELEMENTS);
+                        pendingEscapable = false;
+                        if (pendingRawTextElement == null) {
+                            pendingRawTextElement = startsWithElement(source, index + 1, ESCAPABLE_RAW_TEXT_ELEMENTS);
+                            pendingEscapable = pendingRawTextElement != null;
+                        }
+                    }
+            }
+            literal.append(source.charAt(index));
+            index++;
+        }
+        if (literal.length() > 0) {
+            segments.add(new Segment(literal.toString(), null, context, false));
+        }
+
+        // a variable used in several contexts can only be updated by a reload.
+        int estimatedLength = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            final Segment segment = segments.get(i);
+            if (segment.literal != null) {
+                estimatedLength += segment.literal.length();
+                continue;
+            }
+            estimatedLength += AVERAGE_VALUE_LENGTH;
+            if (segment.bound && unboundNames.contains(segment.name)) {
+                segments.set(i, new Segment(null, segment.name, segment.context, false));
+            }
+        }
+        return new CompiledTemplate(templateId, segments.toArray(new Segment[0]), estimatedLength);
+    }
+
+    private static String startsWithElement(final String source, final int index, final String[] elements) {
+        for (final String element : elements) {
+            if (source.regionMatches(true, index, element, 0, element.length())) {
+                final int end = index + element.length();
+                if (end >= source.length() || !Character.isLetterOrDigit(source.charAt(end))) {
+                    return element;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renders the template with the values of the given context.
+     * The template itself is immutable, so it can be rendered concurrently with different contexts.
+     *
+     * @param variableContext        the variables to render the template with.
+     * @param failOnMissingVariables if false, missing variables are rendered as empty string.
+     *
+     * @return the rendered template.
+     *
+     * @throws NotAvailableException is thrown if variables are missing, the exception lists all of them.
+     */
+    public RenderedTemplate render(final VariableContext variableContext, final boolean failOnMissingVariables) throws NotAvailableException {
+        final StringBuilder html = new StringBuilder(estimatedLength);
+        final Map<String, String> boundVariables = new HashMap<>();
+        final Map<String, String> unboundVariables = new HashMap<>();
+        final Map<String, String> resolvedValues = new HashMap<>();
+        List<String> missingVariables = null;
+
+        for (final Segment segment : segments) {
+            if (segment.literal != null) {
+                html.append(segment.literal);
+                continue;
+            }
+
+            String value = resolvedValues.get(segment.name);
+            if (value == null) {
+                try {
+                    value = variableContext.getValue(segment.name);
+                } catch (NotAvailableException ex) {
+                    if (failOnMissingVariables) {
+                        if (missingVariables == null) {
+                            missingVariables = new ArrayList<>();
+                        }
+                        if (!missingVariables.contains(segment.name)) {
+                            missingVariables.add(segment.name);
+                        }
+                        continue;
+                    }
+                    value = "";
+                }
+                resolvedValues.put(segment.name, value);
+            }
+
+            if (segment.bound) {
+                boundVariables.put(segment.name, value);
+                html.append("<span ").append(RenderedTemplate.BINDING_ATTRIBUTE).append("=\"").append(segment.name).append("\">");
+                appendEscaped(html, value);
+                html.append("</span>");
+            } else {
+                unboundVariables.put(segment.name, value);
+                if (segment.context == Context.COMMENT || segment.context == Context.RAW_TEXT) {
+                    html.append(value);
+                } else {
+                    appendEscaped(html, value);
+                }
+            }
+        }
+
+        if (missingVariables != null) {
+            throw new NotAvailableException("Variables " + missingVariables + " of Template[" + templateId + "] provided by " + variableContext);
+        }
+        return new RenderedTemplate(templateId, html.toString(), boundVariables, unboundVariables);
+    }
+
+    /**
+     * @return the identity of this template.
+     */
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Appends the given value escaped for html text and attribute values.
+     *
+     * @param builder the builder to append to.
+     * @param value   the value to escape.
+     */
+    public static void appendEscaped(final StringBuilder builder, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                case '\'':
+                    builder.append("&#39;");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * @param value the value to escape.
+     *
+     * @return the value escaped for html text and attribute values.
+     */
+    public static String escape(final String value) {
+        final StringBuilder builder = new StringBuilder(value.length() + 16);
+        appendEscaped(builder, value);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + templateId + ", " + segments.length + " segments]";
+    }
+
+    private static class Segment {
+
+        private final String literal;
+        private final String name;
+        private final Context context;
+        private final boolean bound;
+
+        private Segment(final String literal, final String name, final Context context, final boolean bound) {
+            this.literal = literal;
+            this.name = name;
+            this.context = context;
+            this.bound = bound;
+        }
+    }
+}
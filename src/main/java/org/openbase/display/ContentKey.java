@@ -0,0 +1,126 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.openbase.jul.exception.VerificationFailedException;
+
+/**
+ * Identifies a displayed content by the SHA-256 digest of its html string or url.
+ * <p>
+ * The digest is computed once when the key is created, so the key can be compared and hashed cheaply afterwards.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public final class ContentKey {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final byte[] digest;
+    private final int hashCode;
+
+    private ContentKey(final byte[] digest) {
+        this.digest = digest;
+        this.hashCode = Arrays.hashCode(digest);
+    }
+
+    /**
+     * Computes the key of the given content.
+     *
+     * @param content the html content or url to identify.
+     *
+     * @return the content key.
+     */
+    public static ContentKey of(final String content) {
+        try {
+            return new ContentKey(MessageDigest.getInstance(DIGEST_ALGORITHM).digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            // every java platform is required to support SHA-256
+            throw new AssertionError(DIGEST_ALGORITHM + " not supported!", ex);
+        }
+    }
+
+    /**
+     * Restores a key out of its hex string representation.
+     *
+     * @param hexString the digest as hex string, e.g. returned by a preload request.
+     *
+     * @return the content key.
+     *
+     * @throws VerificationFailedException if the given string is not a valid key.
+     */
+    public static ContentKey fromHexString(final String hexString) throws VerificationFailedException {
+        if (hexString == null || hexString.length() != 64) {
+            throw new VerificationFailedException("ContentKey[" + hexString + "] is not a valid " + DIGEST_ALGORITHM + " hex string!");
+        }
+        final byte[] digest = new byte[hexString.length() / 2];
+        for (int i = 0; i < digest.length; i++) {
+            final int high = Character.digit(hexString.charAt(i * 2), 16);
+            final int low = Character.digit(hexString.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new VerificationFailedException("ContentKey[" + hexString + "] is not a valid " + DIGEST_ALGORITHM + " hex string!");
+            }
+            digest[i] = (byte) ((high << 4) | low);
+        }
+        return new ContentKey(digest);
+    }
+
+    /**
+     * @return the digest as lower case hex string.
+     */
+    public String toHexString() {
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ContentKey)) {
+            return false;
+        }
+        final ContentKey other = (ContentKey) obj;
+        return hashCode == other.hashCode && MessageDigest.isEqual(digest, other.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + toHexString().substring(0, 12) + "]";
+    }
+}
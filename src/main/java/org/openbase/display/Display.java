@@ -33,6 +33,90 @@ import org.openbase.type.configuration.MetaConfigType.MetaConfig;
  */
 public interface Display {
 
+    /**
+     * Meta config key which pins the content of a template, so its tab is never recycled until it is unpinned.
+     */
+    String KEY_PINNED = "PINNED";
+
+    /**
+     * Meta config key which defines the tab priority tier (LOW, NORMAL or HIGH) of a template.
+     * Tabs of lower tiers are recycled first.
+     */
+    String KEY_PRIORITY = "PRIORITY";
+
+    /**
+     * Meta config key which defines the urgency (CONTENT, INFO, WARN or ERROR) of a template request.
+     * More urgent requests are applied first if the display is busy. Defaults to CONTENT.
+     */
+    String KEY_COMMAND_PRIORITY = "COMMAND_PRIORITY";
+
+    /**
+     * Meta config key which selects the tab to patch by its content key as hex string.
+     * If not set, the currently displayed tab is patched.
+     */
+    String KEY_TAB = "TAB";
+
+    /**
+     * Meta config key which defines the id of the element to patch.
+     */
+    String KEY_ELEMENT_ID = "ELEMENT_ID";
+
+    /**
+     * Meta config key which defines the new inner html of the element to patch.
+     */
+    String KEY_HTML = "HTML";
+
+    /**
+     * Meta config key which defines the new text of the element to patch.
+     */
+    String KEY_TEXT = "TEXT";
+
+    /**
+     * Meta config key which defines the java script to execute on a tab.
+     */
+    String KEY_SCRIPT = "SCRIPT";
+
+    /**
+     * Meta config key which defines how the uris of a template are validated: CACHED (default) uses cached validation results,
+     * FRESH validates the uris again and SKIP disables the validation.
+     */
+    String KEY_URI_VALIDATION = "URI_VALIDATION";
+
+    /**
+     * Display state key providing the content key of the displayed tab as hex string, or an empty string if nothing is displayed.
+     */
+    String STATE_FRONT_CONTENT = "FRONT_CONTENT";
+
+    /**
+     * Display state key providing whether the display window is visible.
+     */
+    String STATE_VISIBLE = "VISIBLE";
+
+    /**
+     * Display state key providing the load state of the displayed content: NONE, LOADING, LOADED or FAILED.
+     */
+    String STATE_LOAD = "LOAD";
+
+    /**
+     * Display state key providing the amount of tabs within the tab pool.
+     */
+    String STATE_TAB_POOL_SIZE = "TAB_POOL_SIZE";
+
+    /**
+     * Display state key providing the amount of requests served by an already loaded tab.
+     */
+    String STATE_TAB_POOL_HITS = "TAB_POOL_HITS";
+
+    /**
+     * Display state key providing the amount of tabs recycled for other content.
+     */
+    String STATE_TAB_POOL_EVICTIONS = "TAB_POOL_EVICTIONS";
+
+    /**
+     * Display state key providing the amount of commands waiting for the display thread.
+     */
+    String STATE_COMMAND_QUEUE_DEPTH = "COMMAND_QUEUE_DEPTH";
+
     /**
      * Shows the given URL on the generic display.
      * Display will set to foreground if the panel is hided.
@@ -204,6 +288,128 @@ public interface Display {
     @RPCMethod
     Future<Void> setImage(final String image);
 
+    /**
+     * Loads the given URL into a background tab without displaying it.
+     * A later {@code showUrl} call of the same URL only needs to bring the already rendered tab to the front.
+     *
+     * @param url the URL to preload.
+     *
+     * @return the future which provides the key of the preloaded content as hex string.
+     */
+    @RPCMethod
+    Future<String> preloadUrl(final String url);
+
+    /**
+     * Loads the given html content into a background tab without displaying it.
+     * A later {@code showHtmlContent} call of the same content only needs to bring the already rendered tab to the front.
+     *
+     * @param content the html string to preload.
+     *
+     * @return the future which provides the key of the preloaded content as hex string.
+     */
+    @RPCMethod
+    Future<String> preloadHtmlContent(final String content);
+
+    /**
+     * Loads the given template into a background tab without displaying it.
+     * A later {@code showTemplate} call with the same meta config only needs to bring the already rendered tab to the front.
+     * Each rendering is preloaded into a tab of its own, so several renderings of the same template can be preloaded at once, and a displayed tab is never modified by a preload.
+     *
+     * @param metaConfig a key value set used to define the template type and setup all template parameters.
+     *
+     * @return the future which provides the key of the tab the template is preloaded into as hex string.
+     */
+    @RPCMethod
+    Future<String> preloadTemplate(final MetaConfig metaConfig);
+
+    /**
+     * Pins the tab of the given content, so it is never recycled until it is unpinned.
+     * The content needs to be loaded already, e.g. via one of the preload methods.
+     *
+     * @param contentKey the content key as hex string, like it is provided by the preload methods.
+     *
+     * @return the future which gives feedback about the asynchronous execution process.
+     */
+    @RPCMethod
+    Future<Void> pinContent(final String contentKey);
+
+    /**
+     * Releases the pin of the tab of the given content, so it can be recycled again.
+     *
+     * @param contentKey the content key as hex string, like it is provided by the preload methods.
+     *
+     * @return the future which gives feedback about the asynchronous execution process.
+     */
+    @RPCMethod
+    Future<Void> unpinContent(final String contentKey);
+
+    /**
+     * Provides the state of all cached tabs.
+     *
+     * @return the future which provides a meta config containing an entry per tab. Each entry key is the content key as hex string and each value describes the priority, pin state and hit count of the tab.
+     */
+    @RPCMethod
+    Future<MetaConfig> getTabStates();
+
+    /**
+     * Provides a snapshot of the display state, which is also published as the data of the display server whenever it changes.
+     * The snapshot contains an entry per state key, see the STATE_* keys.
+     *
+     * @return the future which provides the state snapshot.
+     */
+    @RPCMethod
+    Future<MetaConfig> getDisplayState();
+
+    /**
+     * Replaces the inner html of an element of an already loaded tab without reloading the page.
+     * <p>
+     * meta config example:
+     * <ul>
+     * <li>TAB="..." (optional content key, the displayed tab is patched by default)
+     * <li>ELEMENT_ID="temperature"
+     * <li>HTML="&lt;b&gt;21.5&lt;/b&gt;"
+     * </ul>
+     *
+     * @param metaConfig a key value set used to define the patch.
+     *
+     * @return the future which is completed as soon as the patch is applied.
+     */
+    @RPCMethod
+    Future<Void> patchElement(final MetaConfig metaConfig);
+
+    /**
+     * Replaces the text of an element of an already loaded tab without reloading the page.
+     * <p>
+     * meta config example:
+     * <ul>
+     * <li>TAB="..." (optional content key, the displayed tab is patched by default)
+     * <li>ELEMENT_ID="temperature"
+     * <li>TEXT="21.5"
+     * </ul>
+     *
+     * @param metaConfig a key value set used to define the patch.
+     *
+     * @return the future which is completed as soon as the patch is applied.
+     */
+    @RPCMethod
+    Future<Void> setElementText(final MetaConfig metaConfig);
+
+    /**
+     * Executes a java script on an already loaded tab.
+     * <p>
+     * meta config example:
+     * <ul>
+     * <li>TAB="..." (optional content key, the script is executed on the displayed tab by default)
+     * <li>SCRIPT="document.title"
+     * </ul>
+     *
+     * @param metaConfig a key value set used to define the script.
+     *
+     * @return the future which provides the string representation of the script result.
+     */
+    @RPCMethod
+    Future<String> executeOnTab(final MetaConfig metaConfig);
+
     /**
      * Displays the server in foreground fullscreen mode or hides the overall window.
      *
@@ -224,8 +430,12 @@ public interface Display {
      * <li>IMAGE_URL="https://images.com/mycat.png"
      * <li>TEXT_TOP="I am a nice cat!"
      * <li>TEXT_BOTTOM="Wonderful"
+     * <li>PINNED="true" (optional)
+     * <li>PRIORITY="HIGH" (optional)
      * </ul>
      *
+     * The TEMPLATE entry names either a built-in template or a template of the directory configured by {@code --template-dir}.
+     *
      * @param metaConfig a key value set used to define the template type and setup all template parameters.
      *
      * @return the future which gives feedback about the asynchronous execution process.
@@ -261,4 +471,26 @@ public interface Display {
      */
     @RPCMethod
     Future<Void> closeAll();
+
+    /**
+     * Applies several commands in one call. All commands are applied in the given order within the same pass of the display thread,
+     * so no intermediate state becomes visible between them. A failing command does not abort the following ones.
+     * <p>
+     * Batches are built via {@link DisplayBatch}, e.g.
+     * <pre>
+     * {@code
+     * display.applyBatch(new DisplayBatch()
+     *         .add(Command.SET_TEMPLATE, templateConfig)
+     *         .add(Command.PIN_CONTENT, contentKey)
+     *         .add(Command.SET_VISIBLE, true)
+     *         .build());
+     * }
+     * </pre>
+     *
+     * @param batch the encoded commands.
+     *
+     * @return the future which provides a meta config containing one result or error entry per command in command order.
+     */
+    @RPCMethod
+    Future<MetaConfig> applyBatch(final MetaConfig batch);
 }
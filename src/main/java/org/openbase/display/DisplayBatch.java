@@ -0,0 +1,307 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.type.configuration.EntryType.Entry;
+import org.openbase.type.configuration.MetaConfigType.MetaConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * An ordered list of display commands which is applied by a single {@link Display#applyBatch(MetaConfig)} call.
+ * <p>
+ * A batch is encoded as meta config: each command starts with a {@link #KEY_COMMAND} entry naming the {@link Command},
+ * followed by the entries of its argument. Commands with a string or boolean argument use a single {@link #KEY_ARGUMENT} entry,
+ * commands with a meta config argument use all entries up to the next command entry as their meta config.
+ * <p>
+ * The result of a batch contains one entry per command in command order. Its key is {@link #KEY_RESULT} and its value the command result,
+ * which is empty for commands without result, or {@link #KEY_ERROR} and the error message if the command failed.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DisplayBatch {
+
+    public static final String KEY_COMMAND = "COMMAND";
+    public static final String KEY_ARGUMENT = "ARGUMENT";
+    public static final String KEY_RESULT = "RESULT";
+    public static final String KEY_ERROR = "ERROR";
+
+    private enum ArgumentType {
+        NONE,
+        STRING,
+        BOOLEAN,
+        META_CONFIG
+    }
+
+    /**
+     * All commands supported by a batch, named like the display method they call.
+     */
+    public enum Command {
+        SHOW_URL_AND_RELOAD(ArgumentType.STRING, (display, argument) -> display.showUrlAndReload(argument.string)),
+        SHOW_HTML_CONTENT_AND_RELOAD(ArgumentType.STRING, (display, argument) -> display.showHtmlContentAndReload(argument.string)),
+        SHOW_URL(ArgumentType.STRING, (display, argument) -> display.showUrl(argument.string)),
+        SHOW_HTML_CONTENT(ArgumentType.STRING, (display, argument) -> display.showHtmlContent(argument.string)),
+        SHOW_INFO_TEXT(ArgumentType.STRING, (display, argument) -> display.showInfoText(argument.string)),
+        SHOW_WARN_TEXT(ArgumentType.STRING, (display, argument) -> display.showWarnText(argument.string)),
+        SHOW_ERROR_TEXT(ArgumentType.STRING, (display, argument) -> display.showErrorText(argument.string)),
+        SHOW_TEXT(ArgumentType.STRING, (display, argument) -> display.showText(argument.string)),
+        SHOW_IMAGE(ArgumentType.STRING, (display, argument) -> display.showImage(argument.string)),
+        SET_URL(ArgumentType.STRING, (display, argument) -> display.setUrl(argument.string)),
+        SET_HTML_CONTENT(ArgumentType.STRING, (display, argument) -> display.setHtmlContent(argument.string)),
+        SET_INFO_TEXT(ArgumentType.STRING, (display, argument) -> display.setInfoText(argument.string)),
+        SET_WARN_TEXT(ArgumentType.STRING, (display, argument) -> display.setWarnText(argument.string)),
+        SET_ERROR_TEXT(ArgumentType.STRING, (display, argument) -> display.setErrorText(argument.string)),
+        SET_TEXT(ArgumentType.STRING, (display, argument) -> display.setText(argument.string)),
+        SET_IMAGE(ArgumentType.STRING, (display, argument) -> display.setImage(argument.string)),
+        PRELOAD_URL(ArgumentType.STRING, (display, argument) -> display.preloadUrl(argument.string)),
+        PRELOAD_HTML_CONTENT(ArgumentType.STRING, (display, argument) -> display.preloadHtmlContent(argument.string)),
+        PRELOAD_TEMPLATE(ArgumentType.META_CONFIG, (display, argument) -> display.preloadTemplate(argument.metaConfig)),
+        PIN_CONTENT(ArgumentType.STRING, (display, argument) -> display.pinContent(argument.string)),
+        UNPIN_CONTENT(ArgumentType.STRING, (display, argument) -> display.unpinContent(argument.string)),
+        GET_TAB_STATES(ArgumentType.NONE, (display, argument) -> display.getTabStates()),
+        GET_DISPLAY_STATE(ArgumentType.NONE, (display, argument) -> display.getDisplayState()),
+        PATCH_ELEMENT(ArgumentType.META_CONFIG, (display, argument) -> display.patchElement(argument.metaConfig)),
+        SET_ELEMENT_TEXT(ArgumentType.META_CONFIG, (display, argument) -> display.setElementText(argument.metaConfig)),
+        EXECUTE_ON_TAB(ArgumentType.META_CONFIG, (display, argument) -> display.executeOnTab(argument.metaConfig)),
+        SET_VISIBLE(ArgumentType.BOOLEAN, (display, argument) -> display.setVisible(Boolean.parseBoolean(argument.string))),
+        SET_TEMPLATE(ArgumentType.META_CONFIG, (display, argument) -> display.setTemplate(argument.metaConfig)),
+        SHOW_TEMPLATE(ArgumentType.META_CONFIG, (display, argument) -> display.showTemplate(argument.metaConfig)),
+        CLOSE_ALL(ArgumentType.NONE, (display, argument) -> display.closeAll());
+
+        private final ArgumentType argumentType;
+        private final Invocation invocation;
+
+        Command(final ArgumentType argumentType, final Invocation invocation) {
+            this.argumentType = argumentType;
+            this.invocation = invocation;
+        }
+    }
+
+    private interface Invocation {
+        Future<?> invoke(final Display display, final Argument argument) throws CouldNotPerformException;
+    }
+
+    private static class Argument {
+
+        private final String string;
+        private final MetaConfig metaConfig;
+
+        private Argument(final String string, final MetaConfig metaConfig) {
+            this.string = string;
+            this.metaConfig = metaConfig;
+        }
+    }
+
+    private final MetaConfig.Builder batch;
+
+    public DisplayBatch() {
+        this.batch = MetaConfig.newBuilder();
+    }
+
+    /**
+     * Appends a command without argument.
+     *
+     * @param command the command to append.
+     *
+     * @return this batch.
+     */
+    public DisplayBatch add(final Command command) {
+        verifyArgumentType(command, ArgumentType.NONE);
+        batch.addEntry(Entry.newBuilder().setKey(KEY_COMMAND).setValue(command.name()));
+        return this;
+    }
+
+    /**
+     * Appends a command with a string argument.
+     *
+     * @param command  the command to append.
+     * @param argument the argument of the command.
+     *
+     * @return this batch.
+     */
+    public DisplayBatch add(final Command command, final String argument) {
+        verifyArgumentType(command, ArgumentType.STRING);
+        batch.addEntry(Entry.newBuilder().setKey(KEY_COMMAND).setValue(command.name()));
+        batch.addEntry(Entry.newBuilder().setKey(KEY_ARGUMENT).setValue(argument));
+        return this;
+    }
+
+    /**
+     * Appends a command with a boolean argument.
+     *
+     * @param command  the command to append.
+     * @param argument the argument of the command.
+     *
+     * @return this batch.
+     */
+    public DisplayBatch add(final Command command, final boolean argument) {
+        verifyArgumentType(command, ArgumentType.BOOLEAN);
+        batch.addEntry(Entry.newBuilder().setKey(KEY_COMMAND).setValue(command.name()));
+        batch.addEntry(Entry.newBuilder().setKey(KEY_ARGUMENT).setValue(Boolean.toString(argument)));
+        return this;
+    }
+
+    /**
+     * Appends a command with a meta config argument.
+     *
+     * @param command  the command to append.
+     * @param argument the argument of the command.
+     *
+     * @return this batch.
+     */
+    public DisplayBatch add(final Command command, final MetaConfig argument) {
+        verifyArgumentType(command, ArgumentType.META_CONFIG);
+        for (final Entry entry : argument.getEntryList()) {
+            if (entry.getKey().equals(KEY_COMMAND)) {
+                throw new IllegalArgumentException("Argument of " + command + " contains the reserved key " + KEY_COMMAND + "!");
+            }
+        }
+        batch.addEntry(Entry.newBuilder().setKey(KEY_COMMAND).setValue(command.name()));
+        batch.addAllEntry(argument.getEntryList());
+        return this;
+    }
+
+    private static void verifyArgumentType(final Command command, final ArgumentType argumentType) {
+        if (command.argumentType != argumentType) {
+            throw new IllegalArgumentException(command + " expects an argument of type " + command.argumentType + "!");
+        }
+    }
+
+    /**
+     * @return the encoded batch to pass to {@link Display#applyBatch(MetaConfig)}.
+     */
+    public MetaConfig build() {
+        return batch.build();
+    }
+
+    /**
+     * Applies all commands of the given batch in order. The whole batch is parsed before any command is applied,
+     * so a malformed batch is rejected as a whole. Failing commands do not prevent the following ones from being applied.
+     *
+     * @param display the display to apply the commands on.
+     * @param batch   the encoded batch.
+     *
+     * @return a future providing the results of all commands, see {@link DisplayBatch}.
+     *
+     * @throws CouldNotPerformException is thrown if the batch is malformed.
+     */
+    static CompletableFuture<MetaConfig> apply(final Display display, final MetaConfig batch) throws CouldNotPerformException {
+        final List<Command> commands = new ArrayList<>();
+        final List<Argument> arguments = new ArrayList<>();
+        parse(batch, commands, arguments);
+
+        final List<CompletableFuture<String>> resultFutures = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            CompletableFuture<String> resultFuture;
+            try {
+                resultFuture = toCompletableFuture(commands.get(i).invocation.invoke(display, arguments.get(i)));
+            } catch (CouldNotPerformException | RuntimeException ex) {
+                resultFuture = new CompletableFuture<>();
+                resultFuture.completeExceptionally(ex);
+            }
+            resultFutures.add(resultFuture);
+        }
+
+        return CompletableFuture.allOf(resultFutures.stream().map(future -> future.handle((result, ex) -> null)).toArray(CompletableFuture[]::new)).thenApply(done -> {
+            final MetaConfig.Builder results = MetaConfig.newBuilder();
+            for (final CompletableFuture<String> resultFuture : resultFutures) {
+                try {
+                    results.addEntry(Entry.newBuilder().setKey(KEY_RESULT).setValue(resultFuture.join()));
+                } catch (CompletionException | CancellationException ex) {
+                    final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    results.addEntry(Entry.newBuilder().setKey(KEY_ERROR).setValue(String.valueOf(cause.getMessage())));
+                }
+            }
+            return results.build();
+        });
+    }
+
+    private static void parse(final MetaConfig batch, final List<Command> commands, final List<Argument> arguments) throws CouldNotPerformException {
+        final List<Entry> entries = batch.getEntryList();
+        int index = 0;
+        while (index < entries.size()) {
+            final Entry commandEntry = entries.get(index++);
+            if (!commandEntry.getKey().equals(KEY_COMMAND)) {
+                throw new CouldNotPerformException("Batch entry " + (index - 1) + " is not a command!");
+            }
+            final Command command;
+            try {
+                command = Command.valueOf(commandEntry.getValue());
+            } catch (IllegalArgumentException ex) {
+                throw new NotAvailableException("Command[" + commandEntry.getValue() + "]");
+            }
+
+            switch (command.argumentType) {
+                case NONE:
+                    arguments.add(new Argument(null, null));
+                    break;
+                case STRING:
+                case BOOLEAN:
+                    if (index >= entries.size() || !entries.get(index).getKey().equals(KEY_ARGUMENT)) {
+                        throw new NotAvailableException("Argument of " + command + " at batch entry " + (index - 1));
+                    }
+                    arguments.add(new Argument(entries.get(index++).getValue(), null));
+                    break;
+                case META_CONFIG:
+                default:
+                    final MetaConfig.Builder metaConfig = MetaConfig.newBuilder();
+                    while (index < entries.size() && !entries.get(index).getKey().equals(KEY_COMMAND)) {
+                        metaConfig.addEntry(entries.get(index++));
+                    }
+                    arguments.add(new Argument(null, metaConfig.build()));
+            }
+            commands.add(command);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<String> toCompletableFuture(final Future<?> future) {
+        if (future instanceof CompletableFuture) {
+            return ((CompletableFuture<Object>) future).thenApply(DisplayBatch::toResultString);
+        }
+
+        // futures of other implementations can only be awaited, which is avoided by the display itself.
+        final CompletableFuture<String> resultFuture = new CompletableFuture<>();
+        try {
+            resultFuture.complete(toResultString(future.get()));
+        } catch (ExecutionException ex) {
+            resultFuture.completeExceptionally(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            resultFuture.completeExceptionally(ex);
+        }
+        return resultFuture;
+    }
+
+    private static String toResultString(final Object result) {
+        return result == null ? "" : result.toString();
+    }
+}
@@ -37,29 +37,27 @@ import rsb.config.ParticipantConfig;
 import rsb.converter.DefaultConverterRepository;
 import rsb.converter.ProtocolBufferConverter;
 import org.openbase.type.configuration.MetaConfigType.MetaConfig;
-import org.openbase.type.domotic.unit.dal.DisplayDataType.DisplayData;
 
 /**
  * A remote to control a generic display server via rsb.
  *
  * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
  */
-public class DisplayRemote extends AbstractRemoteClient<DisplayData> implements Display {
+public class DisplayRemote extends AbstractRemoteClient<MetaConfig> implements Display {
 
     static {
         DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(MetaConfig.getDefaultInstance()));
-        DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(DisplayData.getDefaultInstance()));
     }
 
     private final DisplayRemote broadcastDisplayRemote;
 
     public DisplayRemote() {
-        super(DisplayData.class);
+        super(MetaConfig.class);
         this.broadcastDisplayRemote = new DisplayRemote(null);
     }
 
     public DisplayRemote(final DisplayRemote broadcastDisplayRemote) {
-        super(DisplayData.class);
+        super(MetaConfig.class);
         this.broadcastDisplayRemote = broadcastDisplayRemote;
     }
 
@@ -309,6 +307,122 @@ public class DisplayRemote extends AbstractRemoteClient<DisplayData> implements
             return RPCHelper.callRemoteMethod(image, this, Void.class);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @param url {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> preloadUrl(final String url) {
+        return RPCHelper.callRemoteMethod(url, this, String.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param content {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> preloadHtmlContent(final String content) {
+        return RPCHelper.callRemoteMethod(content, this, String.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> preloadTemplate(final MetaConfig metaConfig) {
+        return RPCHelper.callRemoteMethod(metaConfig, this, String.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param contentKey {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> pinContent(final String contentKey) {
+        return RPCHelper.callRemoteMethod(contentKey, this, Void.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param contentKey {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> unpinContent(final String contentKey) {
+        return RPCHelper.callRemoteMethod(contentKey, this, Void.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<MetaConfig> getTabStates() {
+        return RPCHelper.callRemoteMethod(this, MetaConfig.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<MetaConfig> getDisplayState() {
+        return RPCHelper.callRemoteMethod(this, MetaConfig.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> patchElement(final MetaConfig metaConfig) {
+        return RPCHelper.callRemoteMethod(metaConfig, this, Void.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> setElementText(final MetaConfig metaConfig) {
+        return RPCHelper.callRemoteMethod(metaConfig, this, Void.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> executeOnTab(final MetaConfig metaConfig) {
+        return RPCHelper.callRemoteMethod(metaConfig, this, String.class);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -354,4 +468,16 @@ public class DisplayRemote extends AbstractRemoteClient<DisplayData> implements
     public Future<Void> closeAll() {
             return RPCHelper.callRemoteMethod(this, Void.class);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param batch {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<MetaConfig> applyBatch(final MetaConfig batch) {
+        return RPCHelper.callRemoteMethod(batch, this, MetaConfig.class);
+    }
 }
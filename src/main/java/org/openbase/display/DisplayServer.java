@@ -26,31 +26,44 @@ import org.openbase.jul.communication.controller.AbstractControllerServer;
 import org.openbase.jul.communication.controller.RPCHelper;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InstantiationException;
-import org.openbase.type.domotic.unit.dal.DisplayDataType.DisplayData.Builder;
+import org.openbase.jul.extension.protobuf.ClosableDataBuilder;
 import rsb.converter.DefaultConverterRepository;
 import rsb.converter.ProtocolBufferConverter;
 import org.openbase.type.configuration.MetaConfigType.MetaConfig;
 import org.openbase.jul.extension.rsb.iface.RSBLocalServer;
-import org.openbase.type.domotic.unit.dal.DisplayDataType.DisplayData;
 
 /**
  *
  * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
  */
-public class DisplayServer extends AbstractControllerServer<DisplayData, Builder> {
+public class DisplayServer extends AbstractControllerServer<MetaConfig, MetaConfig.Builder> {
 
     static {
         DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(MetaConfig.getDefaultInstance()));
-        DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(DisplayData.getDefaultInstance()));
     }
 
     private final Display display;
 
     public DisplayServer(final Display display) throws InstantiationException, CouldNotPerformException {
-        super(DisplayData.newBuilder());
+        super(MetaConfig.newBuilder());
         this.display = display;
     }
 
+    /**
+     * Publishes the given display state as the data of this controller, so all remotes are informed about the change.
+     *
+     * @param displayState the display state snapshot.
+     *
+     * @throws CouldNotPerformException is thrown if the state could not be published.
+     */
+    public void updateDisplayState(final MetaConfig displayState) throws CouldNotPerformException {
+        try (ClosableDataBuilder<MetaConfig.Builder> dataBuilder = getDataBuilder(this)) {
+            dataBuilder.getInternalBuilder().clear().mergeFrom(displayState);
+        } catch (Exception ex) {
+            throw new CouldNotPerformException("Could not publish display state!", ex);
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -0,0 +1,166 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.type.configuration.MetaConfigType.MetaConfig;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.openbase.display.DisplayView.logger;
+
+/**
+ * Publishes snapshots of the display state whenever the state may have changed.
+ * <p>
+ * Change notifications are cheap and can be sent for every command: all notifications arriving while an update is pending are merged into this update,
+ * updates are published at most once per {@link #MIN_PUBLISH_INTERVAL} and a snapshot equal to the last published one is not published at all.
+ * Updates never overlap, so snapshots are published in the order they were taken.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DisplayStatePublisher {
+
+    /**
+     * The minimal time in milliseconds between two published snapshots.
+     */
+    public static final long MIN_PUBLISH_INTERVAL = 500;
+
+    private final Executor snapshotExecutor;
+    private final Supplier<MetaConfig> snapshotSupplier;
+    private final Consumer<MetaConfig> publisher;
+    private MetaConfig publishedState;
+    private long lastUpdateTime;
+    private boolean updating, updateRequested, shutdown;
+
+    /**
+     * @param snapshotExecutor the executor taking the snapshots, e.g. the fx application thread.
+     * @param snapshotSupplier provides a snapshot of the current state.
+     * @param publisher        publishes a changed snapshot. It is called from a background thread.
+     */
+    public DisplayStatePublisher(final Executor snapshotExecutor, final Supplier<MetaConfig> snapshotSupplier, final Consumer<MetaConfig> publisher) {
+        this.snapshotExecutor = snapshotExecutor;
+        this.snapshotSupplier = snapshotSupplier;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Notifies the publisher that the display state may have changed. Can be called from any thread.
+     */
+    public synchronized void requestUpdate() {
+        if (shutdown) {
+            return;
+        }
+        if (updating) {
+            updateRequested = true;
+            return;
+        }
+        updating = true;
+
+        try {
+            GlobalScheduledExecutorService.schedule(this::scheduleSnapshot, Math.max(0, lastUpdateTime + MIN_PUBLISH_INTERVAL - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            updating = false;
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not schedule display state update!", ex), logger);
+        }
+    }
+
+    private void scheduleSnapshot() {
+        try {
+            snapshotExecutor.execute(this::update);
+        } catch (RuntimeException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not take display state snapshot!", ex), logger);
+            finishUpdate();
+        }
+    }
+
+    private void update() {
+        final MetaConfig state;
+        synchronized (this) {
+            if (shutdown) {
+                updating = false;
+                return;
+            }
+            lastUpdateTime = System.currentTimeMillis();
+            updateRequested = false;
+        }
+        try {
+            state = snapshotSupplier.get();
+        } catch (RuntimeException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not take display state snapshot!", ex), logger);
+            finishUpdate();
+            return;
+        }
+
+        synchronized (this) {
+            if (state.equals(publishedState)) {
+                finishUpdate();
+                return;
+            }
+            publishedState = state;
+        }
+
+        // publishing notifies all remotes, which should not block the snapshot executor.
+        try {
+            GlobalCachedExecutorService.execute(() -> {
+                try {
+                    publisher.accept(state);
+                } catch (RuntimeException ex) {
+                    ExceptionPrinter.printHistory(new CouldNotPerformException("Could not publish display state!", ex), logger);
+                } finally {
+                    finishUpdate();
+                }
+            });
+        } catch (Exception ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not publish display state!", ex), logger);
+            finishUpdate();
+        }
+    }
+
+    private synchronized void finishUpdate() {
+        updating = false;
+        if (updateRequested) {
+            updateRequested = false;
+            requestUpdate();
+        }
+    }
+
+    /**
+     * @return the last published snapshot or null if no snapshot was published yet.
+     */
+    public synchronized MetaConfig getPublishedState() {
+        return publishedState;
+    }
+
+    /**
+     * Stops publishing, pending updates are skipped.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+}
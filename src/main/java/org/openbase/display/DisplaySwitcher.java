@@ -0,0 +1,342 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.FadeTransition;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
+import org.openbase.jul.exception.InvalidStateException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.openbase.display.DisplayView.logger;
+
+/**
+ * Schedules which tab is brought to the front of the display.
+ * <p>
+ * Switch requests are queued in request order and each one waits for the content of its tab to be loaded.
+ * The latest request wins: as soon as a switch is performed, all switches requested before it are superseded and canceled.
+ * Switches requested afterwards stay pending, so a slow tab never blocks a later one, and a fast tab is never dropped because of an unrelated earlier one.
+ * A repeated request for a tab which is still pending moves the pending switch to the end of the queue, so both requests share the same switch.
+ * <p>
+ * By default only the displayed tab is attached to the scene graph, so every switch re-attaches the view of a tab which causes css, layout and a full repaint.
+ * If a hot tab amount of at least two is configured, the most recently displayed tabs stay attached and are switched by toggling their visibility instead.
+ * In this mode the outgoing tab can optionally be crossfaded by a snapshot of its last frame.
+ * <p>
+ * The switcher is confined to the fx application thread, so all methods need to be called from there.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DisplaySwitcher {
+
+    /**
+     * Time in milliseconds after which a tab is displayed even if its content is still loading.
+     */
+    public static final long CONTENT_LOAD_TIMEOUT = 10000;
+
+    private final StackPane mainStackPane;
+    private final ArrayDeque<Switch> pendingSwitches;
+    private final ArrayDeque<DisplayTab> hotTabs;
+    private final int hotTabAmount;
+    private final Duration crossfadeDuration;
+    private volatile DisplayTab frontTab;
+
+    /**
+     * Creates a switcher which only keeps the displayed tab attached to the scene graph.
+     *
+     * @param mainStackPane the pane to display the tabs on.
+     */
+    public DisplaySwitcher(final StackPane mainStackPane) {
+        this(mainStackPane, 0, 0);
+    }
+
+    /**
+     * @param mainStackPane     the pane to display the tabs on.
+     * @param hotTabAmount      the amount of recently displayed tabs which stay attached, a value below two disables the hot tab mode.
+     * @param crossfadeDuration the crossfade duration in milliseconds used in hot tab mode, 0 disables the crossfade.
+     */
+    public DisplaySwitcher(final StackPane mainStackPane, final int hotTabAmount, final long crossfadeDuration) {
+        this.mainStackPane = mainStackPane;
+        this.pendingSwitches = new ArrayDeque<>();
+        this.hotTabs = new ArrayDeque<>();
+        this.hotTabAmount = hotTabAmount;
+        this.crossfadeDuration = Duration.millis(Math.max(0, crossfadeDuration));
+    }
+
+    /**
+     * @return true if recently displayed tabs are switched by toggling their visibility.
+     */
+    public boolean isHotTabModeEnabled() {
+        return hotTabAmount > 1;
+    }
+
+    /**
+     * Requests to bring the given tab to the front once its current content is loaded.
+     *
+     * @param tab the tab to display.
+     *
+     * @return a future which is completed as soon as the tab is displayed, or canceled if the request is superseded.
+     */
+    public CompletableFuture<Void> switchTo(final DisplayTab tab) {
+        return switchTo(tab, tab.getLoadFuture());
+    }
+
+    /**
+     * Requests to bring the given tab to the front once the given future is completed, e.g. because the content of the tab is modified in place.
+     * The request takes its place in the request order right away, so it never wins against a switch requested afterwards.
+     *
+     * @param tab         the tab to display.
+     * @param readyFuture the future to wait for instead of the load future of the tab.
+     *
+     * @return a future which is completed as soon as the tab is displayed, or canceled if the request is superseded.
+     */
+    public CompletableFuture<Void> switchTo(final DisplayTab tab, final CompletableFuture<?> readyFuture) {
+        if (!Platform.isFxApplicationThread()) {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new InvalidStateException("Display switch not requested from the fx application thread!"));
+            return future;
+        }
+
+        // reuse a pending switch of the same tab, so repeated requests do not pile up.
+        Switch displaySwitch = null;
+        final Iterator<Switch> switchIterator = pendingSwitches.iterator();
+        while (switchIterator.hasNext()) {
+            final Switch pendingSwitch = switchIterator.next();
+            if (pendingSwitch.tab == tab) {
+                switchIterator.remove();
+
+                // a switch canceled by its requester is dropped instead.
+                if (!pendingSwitch.future.isDone()) {
+                    displaySwitch = pendingSwitch;
+                    displaySwitch.requestTime = System.nanoTime();
+                }
+                break;
+            }
+        }
+        if (displaySwitch == null) {
+            displaySwitch = new Switch(tab);
+        }
+        pendingSwitches.addLast(displaySwitch);
+
+        // a reused switch only needs to wait again if the tab started to load new content meanwhile.
+        if (displaySwitch.loadFuture != readyFuture) {
+            displaySwitch.loadFuture = readyFuture;
+            final Switch awaitingSwitch = displaySwitch;
+
+            // failed content is displayed as well, so the error page of the web engine becomes visible.
+            readyFuture
+                    .handle((result, ex) -> null)
+                    .completeOnTimeout(null, CONTENT_LOAD_TIMEOUT, TimeUnit.MILLISECONDS)
+                    .thenRunAsync(() -> perform(awaitingSwitch, readyFuture), Platform::runLater);
+        }
+
+        return displaySwitch.future;
+    }
+
+    /**
+     * Cancels all pending switches to the given tab, e.g. because the tab is going to be recycled.
+     * A hidden hot tab is detached from the scene graph as well, while the displayed tab is kept so the screen is not cleared.
+     *
+     * @param tab the tab which should not be displayed anymore.
+     */
+    public void release(final DisplayTab tab) {
+        final Iterator<Switch> switchIterator = pendingSwitches.iterator();
+        while (switchIterator.hasNext()) {
+            final Switch pendingSwitch = switchIterator.next();
+            if (pendingSwitch.tab == tab) {
+                switchIterator.remove();
+                pendingSwitch.future.cancel(false);
+            }
+        }
+
+        if (tab != frontTab && hotTabs.remove(tab)) {
+            mainStackPane.getChildren().remove(tab.getNode());
+        }
+    }
+
+    /**
+     * In contrast to all other methods this one can be called from any thread.
+     *
+     * @return the tab which is currently displayed or null if no tab was displayed yet.
+     */
+    public DisplayTab getFrontTab() {
+        return frontTab;
+    }
+
+    /**
+     * @return the amount of switches waiting for the content of their tab.
+     */
+    public int getPendingSwitchCount() {
+        return pendingSwitches.size();
+    }
+
+    private void perform(final Switch displaySwitch, final CompletableFuture<?> loadFuture) {
+
+        // skip switches which were superseded or canceled in the meantime, or which wait for newer content by now.
+        if (displaySwitch.loadFuture != loadFuture || !pendingSwitches.contains(displaySwitch)) {
+            return;
+        }
+
+        // a switch canceled by its requester does not supersede anything.
+        if (displaySwitch.future.isDone()) {
+            pendingSwitches.remove(displaySwitch);
+            return;
+        }
+
+        // supersede all switches requested before.
+        Switch pendingSwitch;
+        while ((pendingSwitch = pendingSwitches.pollFirst()) != displaySwitch) {
+            pendingSwitch.future.cancel(false);
+        }
+
+        if (isHotTabModeEnabled()) {
+            toggle(displaySwitch.tab);
+        } else {
+            reattach(displaySwitch.tab);
+        }
+        frontTab = displaySwitch.tab;
+        displaySwitch.future.complete(null);
+        logFirstFrame(displaySwitch);
+    }
+
+    private void reattach(final DisplayTab tab) {
+        final Node tabNode = tab.getNode();
+        if (mainStackPane.getChildren().contains(tabNode)) {
+            return;
+        }
+
+        // display
+        mainStackPane.getChildren().add(tabNode);
+        tabNode.toFront();
+
+        // remove other background views to increase performance
+        for (final Node node : new ArrayList<>(mainStackPane.getChildren())) {
+            if (node == tabNode) {
+                continue;
+            }
+            mainStackPane.getChildren().remove(node);
+        }
+    }
+
+    private void toggle(final DisplayTab tab) {
+        final Node tabNode = tab.getNode();
+        if (tab == frontTab && tabNode.isVisible()) {
+            return;
+        }
+
+        // cover the outgoing tab by a snapshot of its last frame before hiding it.
+        if (frontTab != null && frontTab != tab && crossfadeDuration.greaterThan(Duration.ZERO)) {
+            crossfade(frontTab.getNode());
+        }
+
+        // hide all other attached tabs
+        for (final DisplayTab hotTab : hotTabs) {
+            if (hotTab != tab) {
+                hide(hotTab.getNode());
+            }
+        }
+
+        // display
+        hotTabs.remove(tab);
+        hotTabs.addLast(tab);
+        if (!mainStackPane.getChildren().contains(tabNode)) {
+            mainStackPane.getChildren().add(tabNode);
+        }
+        tabNode.setManaged(true);
+        tabNode.setOpacity(1);
+        tabNode.setVisible(true);
+        tabNode.toFront();
+
+        // detach the least recently displayed tabs exceeding the hot set.
+        while (hotTabs.size() > hotTabAmount) {
+            mainStackPane.getChildren().remove(hotTabs.pollFirst().getNode());
+        }
+
+        // remove views which do not belong to any hot tab.
+        for (final Node node : new ArrayList<>(mainStackPane.getChildren())) {
+            if (node instanceof ImageView) {
+                continue;
+            }
+            if (hotTabs.stream().noneMatch(hotTab -> hotTab.getNode() == node)) {
+                mainStackPane.getChildren().remove(node);
+            }
+        }
+    }
+
+    private void hide(final Node tabNode) {
+        tabNode.setVisible(false);
+        tabNode.setManaged(false);
+    }
+
+    private void crossfade(final Node outgoingNode) {
+        final ImageView snapshotView = new ImageView(outgoingNode.snapshot(null, null));
+        snapshotView.setManaged(false);
+        snapshotView.setMouseTransparent(true);
+        mainStackPane.getChildren().add(snapshotView);
+        snapshotView.toFront();
+
+        final FadeTransition fadeTransition = new FadeTransition(crossfadeDuration, snapshotView);
+        fadeTransition.setFromValue(1);
+        fadeTransition.setToValue(0);
+        fadeTransition.setOnFinished(event -> mainStackPane.getChildren().remove(snapshotView));
+        fadeTransition.play();
+    }
+
+    /**
+     * Logs the latency between the switch request and the first frame rendered afterwards.
+     */
+    private void logFirstFrame(final Switch displaySwitch) {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        new AnimationTimer() {
+            @Override
+            public void handle(final long now) {
+                stop();
+                logger.debug((isHotTabModeEnabled() ? "Toggled" : "Reattached") + " " + displaySwitch.tab.getContentKey() + " with first frame after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - displaySwitch.requestTime) + "ms.");
+            }
+        }.start();
+    }
+
+    private static class Switch {
+
+        private final DisplayTab tab;
+        private final CompletableFuture<Void> future;
+        private CompletableFuture<?> loadFuture;
+        private long requestTime;
+
+        private Switch(final DisplayTab tab) {
+            this.tab = tab;
+            this.future = new CompletableFuture<>();
+            this.requestTime = System.nanoTime();
+        }
+    }
+}
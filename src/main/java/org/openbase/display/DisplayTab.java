@@ -0,0 +1,50 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.scene.Node;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A view which can be brought to the front of the display by the {@link DisplaySwitcher}.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public interface DisplayTab {
+
+    /**
+     * @return the node which is attached to the scene graph to display this tab.
+     */
+    Node getNode();
+
+    /**
+     * @return a future which is completed as soon as the current content of this tab is loaded.
+     */
+    CompletableFuture<Void> getLoadFuture();
+
+    /**
+     * @return the key of the content this tab is assigned to, or null if the tab is not assigned to any content.
+     */
+    ContentKey getContentKey();
+}
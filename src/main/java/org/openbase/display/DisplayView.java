@@ -22,13 +22,17 @@ package org.openbase.display;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
 import java.util.concurrent.*;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.concurrent.Worker;
 import javafx.event.EventHandler;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
@@ -38,14 +42,15 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
-import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import static org.openbase.display.DisplayRemoteSend.handleAction;
 
+import org.apache.commons.io.FileUtils;
 import org.openbase.display.HTMLLoader.Template;
 import org.openbase.display.jp.*;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPServiceException;
+import org.openbase.jps.preset.AbstractJPInteger;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InitializationException;
 import org.openbase.jul.exception.InstantiationException;
@@ -55,7 +60,9 @@ import org.openbase.jul.extension.type.processing.MetaConfigVariableProvider;
 import org.openbase.jul.processing.StringProcessor;
 import org.openbase.jul.schedule.FutureProcessor;
 import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
 import org.slf4j.LoggerFactory;
+import org.openbase.type.configuration.EntryType.Entry;
 import org.openbase.type.configuration.MetaConfigType.MetaConfig;
 
 /**
@@ -67,31 +74,119 @@ public class DisplayView extends Application implements Display {
 
     public static final int AMOUNT_OF_TAB_FALLBACK = 10;
 
-    private final Object TAB_LOCK = new Object();
+    /**
+     * The minimal period of the expired tab reclaim task in milliseconds.
+     */
+    private static final long MIN_TAB_RECLAIM_PERIOD = 10000;
+
+    /**
+     * The maximal amount of expired tabs reclaimed per reclaim task execution.
+     */
+    private static final int MAX_TAB_RECLAIM_AMOUNT = 2;
 
     private DisplayServer broadcastServer, displayServer;
     private Stage primaryStage;
-    private final int maxTabAmount;
 
-    private final HashMap<Integer, WebTab> webTabMap;
-    private final ConcurrentLinkedQueue<WebTab> webTabUsageQueue;
+    private final TabPool<ContentKey, WebTab> tabPool;
+    private final boolean awaitRendering;
+    private ScheduledFuture<?> tabReclaimTask;
     private final HTMLLoader htmlLoader;
     private final StackPane stackPane;
+    private final DisplaySwitcher displaySwitcher;
+    private final DomPatcher domPatcher;
+    private final CommandQueue commandQueue;
+    private final DisplayStatePublisher displayStatePublisher;
+    private final boolean nativeRendering;
+    private NativeTab nativeTab;
+    private CompletableFuture<Void> renderOrderFuture = CompletableFuture.completedFuture(null);
+    private final CacheDirectory cacheDirectory;
+    private File userDataDirectory;
 
     public DisplayView() throws InstantiationException {
         try {
-            this.webTabMap = new HashMap<>();
-            this.webTabUsageQueue = new ConcurrentLinkedQueue<>();
-            this.htmlLoader = new HTMLLoader();
+            int renderCacheSize;
+            try {
+                renderCacheSize = JPService.getProperty(JPRenderCacheSize.class).getValue();
+            } catch (JPServiceException ex) {
+                renderCacheSize = HTMLLoader.DEFAULT_RENDER_CACHE_SIZE;
+            }
+            File templateDirectory;
+            try {
+                final String templateDirectoryPath = JPService.getProperty(JPTemplateDirectory.class).getValue();
+                templateDirectory = templateDirectoryPath.isEmpty() ? null : new File(templateDirectoryPath);
+            } catch (JPServiceException ex) {
+                templateDirectory = null;
+            }
+            this.htmlLoader = new HTMLLoader(renderCacheSize, templateDirectory);
+            this.htmlLoader.getTemplateRegistry().addChangeListener(this::invalidateTemplateTab);
             this.stackPane = new StackPane();
 
-            int tmpMaxTabAmount;
+            int hotTabAmount;
+            try {
+                hotTabAmount = JPService.getProperty(JPHotTabAmount.class).getValue();
+            } catch (JPServiceException ex) {
+                hotTabAmount = 0;
+            }
+
+            long crossfadeDuration;
+            try {
+                crossfadeDuration = JPService.getProperty(JPTabCrossfadeDuration.class).getValue();
+            } catch (JPServiceException ex) {
+                crossfadeDuration = 0;
+            }
+            this.displaySwitcher = new DisplaySwitcher(stackPane, hotTabAmount, crossfadeDuration);
+            this.domPatcher = new DomPatcher();
+
+            int commandQueueSize;
+            try {
+                commandQueueSize = JPService.getProperty(JPCommandQueueSize.class).getValue();
+            } catch (JPServiceException ex) {
+                commandQueueSize = CommandQueue.DEFAULT_CAPACITY;
+            }
+            this.commandQueue = new CommandQueue(commandQueueSize);
+            this.displayStatePublisher = new DisplayStatePublisher(Platform::runLater, this::snapshotDisplayState, this::publishDisplayState);
+
+            boolean nativeRendering;
             try {
-                tmpMaxTabAmount = JPService.getProperty(JPTabAmount.class).getValue();
+                nativeRendering = JPService.getProperty(JPNativeRenderer.class).getValue();
             } catch (JPServiceException ex) {
-                tmpMaxTabAmount = AMOUNT_OF_TAB_FALLBACK;
+                nativeRendering = false;
             }
-            this.maxTabAmount = tmpMaxTabAmount;
+            this.nativeRendering = nativeRendering;
+
+            long userDataCacheSize;
+            try {
+                userDataCacheSize = JPService.getProperty(JPUserDataCacheSize.class).getValue() * 1024L * 1024L;
+            } catch (JPServiceException ex) {
+                userDataCacheSize = 0;
+            }
+            this.cacheDirectory = new CacheDirectory(new File(FileUtils.getTempDirectory(), "generic-display"), userDataCacheSize);
+
+            int maxTabAmount;
+            try {
+                maxTabAmount = JPService.getProperty(JPTabAmount.class).getValue();
+            } catch (JPServiceException ex) {
+                maxTabAmount = AMOUNT_OF_TAB_FALLBACK;
+            }
+
+            long tabMemoryBudget;
+            try {
+                tabMemoryBudget = JPService.getProperty(JPTabMemoryBudget.class).getValue() * 1024L * 1024L;
+            } catch (JPServiceException ex) {
+                tabMemoryBudget = 0;
+            }
+            this.tabPool = new TabPool<>(maxTabAmount, tabMemoryBudget, WebTab::getWeight, this::newWebTab, WebTab::updateContentKey, WebTab::isDisplayed);
+            applyTabQuota(TabPool.Priority.LOW, JPLowTabQuota.class);
+            applyTabQuota(TabPool.Priority.NORMAL, JPNormalTabQuota.class);
+            applyTabQuota(TabPool.Priority.HIGH, JPHighTabQuota.class);
+
+            boolean tmpAwaitRendering;
+            try {
+                tmpAwaitRendering = JPService.getProperty(JPAwaitRendering.class).getValue();
+            } catch (JPServiceException ex) {
+                tmpAwaitRendering = false;
+            }
+            this.awaitRendering = tmpAwaitRendering;
         } catch (CouldNotPerformException ex) {
             throw new InstantiationException(this, ex);
         }
@@ -134,27 +229,103 @@ public class DisplayView extends Application implements Display {
 
             primaryStage.setScene(scene);
 
+            // report boot to first paint duration
+            stackPane.getChildren().addListener(new ListChangeListener<Node>() {
+                @Override
+                public void onChanged(Change<? extends Node> change) {
+                    stackPane.getChildren().removeListener(this);
+                    logger.info("first content displayed " + (System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime()) + "ms after boot.");
+                }
+            });
+
             try {
-                broadcastServer = new DisplayServer(this);
-                broadcastServer.init(JPService.getProperty(JPBroadcastDisplayScope.class).getValue());
-                broadcastServer.activate();
-            } catch (JPServiceException | CouldNotPerformException ex) {
-                throw new CouldNotPerformException("Could not load display server!", ex);
+                userDataDirectory = cacheDirectory.acquire();
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not acquire user data directory, web engine default is used instead.", ex), logger);
             }
 
+            // activate servers in background while the web views are pre-warmed on the fx thread.
+            final Future<Void> serverActivationTask = GlobalCachedExecutorService.submit(() -> {
+                activateServers();
+                return null;
+            });
+            prewarmTabs();
             try {
-                displayServer = new DisplayServer(this);
-                displayServer.init(JPService.getProperty(JPDisplayScope.class).getValue());
-                displayServer.activate();
-            } catch (JPServiceException | CouldNotPerformException ex) {
+                serverActivationTask.get();
+            } catch (ExecutionException ex) {
                 throw new CouldNotPerformException("Could not load display server!", ex);
             }
-            this.htmlLoader.init(getScreen());
+            this.htmlLoader.init(getScreen(), newImagePipeline());
+            if (nativeRendering) {
+                nativeTab = new NativeTab(displaySwitcher, getScreen().getBounds());
+            }
+
+            try {
+                htmlLoader.getTemplateRegistry().activate();
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not watch template directory, template changes require a restart.", ex), logger);
+            }
         } catch (CouldNotPerformException ex) {
             throw new InitializationException(this, ex);
         }
     }
 
+    /**
+     * Creates the pipeline which prepares images within the user data directory, so the prepared images are shared with later processes using the same directory.
+     *
+     * @return the pipeline or null if image preparation is disabled or no user data directory is available.
+     */
+    private ImagePipeline newImagePipeline() {
+        int imageCacheSize;
+        try {
+            imageCacheSize = JPService.getProperty(JPImageCacheSize.class).getValue();
+        } catch (JPServiceException ex) {
+            imageCacheSize = 0;
+        }
+
+        if (imageCacheSize <= 0 || userDataDirectory == null) {
+            return null;
+        }
+        return new ImagePipeline(new File(userDataDirectory, "images"), imageCacheSize * 1024L * 1024L);
+    }
+
+    private void activateServers() throws CouldNotPerformException, InterruptedException {
+        try {
+            broadcastServer = new DisplayServer(this);
+            broadcastServer.init(JPService.getProperty(JPBroadcastDisplayScope.class).getValue());
+            broadcastServer.activate();
+        } catch (JPServiceException | CouldNotPerformException ex) {
+            throw new CouldNotPerformException("Could not load display server!", ex);
+        }
+
+        try {
+            displayServer = new DisplayServer(this);
+            displayServer.init(JPService.getProperty(JPDisplayScope.class).getValue());
+            displayServer.activate();
+        } catch (JPServiceException | CouldNotPerformException ex) {
+            throw new CouldNotPerformException("Could not load display server!", ex);
+        }
+    }
+
+    /**
+     * Creates blank tabs in advance so the first display requests do not have to pay the web engine initialization.
+     */
+    private void prewarmTabs() {
+        int prewarmAmount;
+        try {
+            prewarmAmount = JPService.getProperty(JPTabPrewarmAmount.class).getValue();
+        } catch (JPServiceException ex) {
+            prewarmAmount = 0;
+        }
+
+        final long timestamp = System.currentTimeMillis();
+        prewarmAmount = Math.min(prewarmAmount, tabPool.getCapacity());
+        for (int i = 0; i < prewarmAmount; i++) {
+            tabPool.offerIdle(newWebTab(null));
+        }
+        logger.info(prewarmAmount + " tabs pre-warmed in " + (System.currentTimeMillis() - timestamp) + "ms.");
+    }
+
     @Override
     public void start(final Stage primaryStage) throws Exception {
         try {
@@ -168,6 +339,9 @@ public class DisplayView extends Application implements Display {
         } catch (CouldNotPerformException ex) {
             throw ExceptionPrinter.printHistoryAndReturnThrowable(new CouldNotPerformException("Could not start gui!", ex), logger);
         }
+        scheduleTabReclaimTask();
+        displayStatePublisher.requestUpdate();
+
         GlobalCachedExecutorService.submit(() -> {
             try {
                 handleAction(this, false);
@@ -180,72 +354,326 @@ public class DisplayView extends Application implements Display {
     @Override
     public void stop() throws Exception {
         super.stop();
+        if (tabReclaimTask != null) {
+            tabReclaimTask.cancel(false);
+        }
+        displayStatePublisher.shutdown();
         displayServer.shutdown();
         broadcastServer.shutdown();
-        synchronized (TAB_LOCK) {
-            webTabMap.values().forEach(tab -> {
-                tab.shutdown();
-            });
-        }
+        htmlLoader.getTemplateRegistry().shutdown();
+
+        // the user data directory is trimmed on release, so no web engine may use it anymore.
+        tabPool.evictAll().forEach(WebTab::shutdown);
+        tabPool.getIdleTabs().forEach(WebTab::shutdown);
+        cacheDirectory.release();
+    }
+
+    private WebTab newWebTab(final ContentKey contentKey) {
+        final WebTab webTab = new WebTab(contentKey, displaySwitcher, userDataDirectory);
+        webTab.getEngine().getLoadWorker().stateProperty().addListener((observable, oldState, newState) -> {
+            if (newState == Worker.State.SUCCEEDED) {
+                updateTabWeight(webTab);
+            }
+            displayStatePublisher.requestUpdate();
+        });
+        return webTab;
     }
 
-    private int getHash(final String context) {
-        return new HashCodeBuilder().append(context).toHashCode();
+    private void applyTabQuota(final TabPool.Priority priority, final Class<? extends AbstractJPInteger> quotaProperty) {
+        final int quota;
+        try {
+            quota = JPService.getProperty(quotaProperty).getValue();
+        } catch (JPServiceException ex) {
+            return;
+        }
+        if (quota > 0) {
+            tabPool.setQuota(priority, quota);
+        }
     }
 
-    private WebTab loadWebEngine(final String context) {
-        synchronized (TAB_LOCK) {
-            assert getHash(context) == getHash(context);
-            int contextHash = getHash(context);
-            WebTab webTab;
+    private void updateTabWeight(final WebTab webTab) {
+        final ContentKey contentKey = webTab.getContentKey();
+        if (contentKey == null) {
+            return;
+        }
+        webTab.estimateWeight();
+        for (final WebTab outdatedTab : tabPool.updateWeight(contentKey)) {
+            logger.info("release " + outdatedTab.getContentKey() + " to satisfy tab memory budget.");
+            outdatedTab.dispose();
+        }
+        logger.debug(tabPool.stats().toString());
+    }
 
-            // create new tab or load existing one if content is not already displayed.
-            if (!webTabMap.containsKey(contextHash)) {
+    /**
+     * Periodically unloads tabs which were not used within the configured idle timeout.
+     * The expired tabs are released one by one, so the fx thread is only shortly blocked per tab.
+     */
+    private void scheduleTabReclaimTask() {
+        long idleTimeout;
+        try {
+            idleTimeout = TimeUnit.MINUTES.toMillis(JPService.getProperty(JPTabIdleTimeout.class).getValue());
+        } catch (JPServiceException ex) {
+            idleTimeout = 0;
+        }
 
-                // check if all tabs are in use.
-                if (webTabMap.size() >= maxTabAmount) { // recover outdated tab
-                    // get outdated tab
-                    webTab = webTabUsageQueue.poll();
-                    // update context hash
-                    webTabMap.remove(webTab.getContentHash());
-                    webTab.updateContextHash(contextHash);
+        if (idleTimeout <= 0) {
+            return;
+        }
 
-                    webTabMap.put(contextHash, webTab);
-                } else { // create new tab
-                    webTabMap.put(contextHash, new WebTab(contextHash, stackPane));
+        final long maxIdleTime = idleTimeout;
+        final long period = Math.max(maxIdleTime / 4, MIN_TAB_RECLAIM_PERIOD);
+        try {
+            tabReclaimTask = GlobalScheduledExecutorService.scheduleAtFixedRate(() -> {
+                for (int i = 0; i < MAX_TAB_RECLAIM_AMOUNT; i++) {
+                    Platform.runLater(() -> releaseExpiredTab(maxIdleTime));
                 }
+            }, period, period, TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not schedule tab reclaim task!", ex), logger);
+        }
+    }
+
+    /**
+     * Releases the least recently used expired tab, if any.
+     * Tabs are only displayed by the fx thread, so expiring the tab on the fx thread guarantees the displayed tab is never released.
+     *
+     * @param maxIdleTime the idle period in milliseconds after which a tab is expired.
+     */
+    private void releaseExpiredTab(final long maxIdleTime) {
+        for (final WebTab expiredTab : tabPool.expire(maxIdleTime, 1, WebTab::isDisplayed)) {
+            logger.debug("release idle tab " + expiredTab.getContentKey());
+            expiredTab.clear();
+            if (!tabPool.offerIdle(expiredTab)) {
+                expiredTab.dispose();
             }
+        }
+    }
 
-            // restore tab
-            webTab = webTabMap.get(contextHash);
+    private WebTab loadWebEngine(final ContentKey contentKey) {
+        return loadWebEngine(contentKey, TabOptions.DEFAULT);
+    }
 
-            // add tab to queue tail so it will not be reused
-            if (webTabUsageQueue.contains(webTab)) {
-                webTabUsageQueue.remove(webTab);
-            }
-            webTabUsageQueue.offer(webTab);
-            return webTab;
+    private WebTab loadWebEngine(final ContentKey contentKey, final TabOptions tabOptions) {
+        // restore existing tab, create a new one or recycle the least recently used tab.
+        final WebTab webTab = tabPool.acquire(contentKey, tabOptions.priority);
+        if (tabOptions.pinned && !tabPool.pin(contentKey)) {
+            logger.warn("Could not pin " + contentKey + " because too many tabs are pinned!");
+        }
+
+        // tabs which could not be recycled earlier because they were displayed or pinned, or a tier quota exceeded by a priority change.
+        for (final WebTab surplusTab : tabPool.shrink(contentKey)) {
+            logger.info("release " + surplusTab.getContentKey() + " exceeding the tab pool limits.");
+            surplusTab.dispose();
         }
+        return webTab;
+    }
+
+    /**
+     * @return a snapshot of the current tab pool usage.
+     */
+    public TabPool.Stats getTabPoolStats() {
+        return tabPool.stats();
+    }
+
+    /**
+     * @return a snapshot of the current render cache usage.
+     */
+    public RenderCache.Stats getRenderCacheStats() {
+        return htmlLoader.getRenderCacheStats();
+    }
+
+    /**
+     * @return a snapshot of the current command queue usage.
+     */
+    public CommandQueue.Stats getCommandQueueStats() {
+        return commandQueue.stats();
     }
 
     private Future<Void> displayHTML(final String html, boolean show, final boolean reload) {
-        return runTask(() -> {
-            loadWebEngine(html).loadContent(html, reload);
-            if (show) {
-                setVisible(show);
+        return displayHTML(html, show, reload, TabOptions.DEFAULT);
+    }
+
+    private Future<Void> displayHTML(final String html, boolean show, final boolean reload, final TabOptions tabOptions) {
+        return awaitRendering(runContentTask(show, tabOptions.commandPriority, () -> {
+            return loadWebEngine(ContentKey.of(html), tabOptions).loadContent(html, reload);
+        }), null);
+    }
+
+    /**
+     * Displays the given template rendering in the tab assigned to its template, see {@link #applyTemplate(WebTab, RenderedTemplate, TabOptions, boolean)}.
+     */
+    private CompletableFuture<Void> dispatchTemplate(final RenderedTemplate renderedTemplate, boolean show, final TabOptions tabOptions) {
+        return awaitRendering(runContentTask(show, tabOptions.commandPriority, () -> {
+            return applyTemplate(loadWebEngine(templateTabKey(renderedTemplate, tabOptions), tabOptions), renderedTemplate, tabOptions, true);
+        }), null);
+    }
+
+    /**
+     * Loads the given template rendering into a tab of its own without bringing the tab to the front.
+     * The tab is keyed by the rendering, so preloads of several renderings of the same template never overwrite each other,
+     * and a later display request of the same rendering finds the tab, see {@link #templateTabKey(RenderedTemplate, TabOptions)}.
+     * A displayed tab is never modified by a preload.
+     *
+     * @return a future providing the content key of the tab.
+     */
+    private CompletableFuture<String> preloadTemplate(final RenderedTemplate renderedTemplate, final TabOptions tabOptions) {
+        final ContentKey tabKey = renderedTemplate.getRenderingKey();
+        return awaitRendering(runTask(tabOptions.commandPriority, () -> {
+            final WebTab webTab = loadWebEngine(tabKey, tabOptions);
+            if (webTab.isDisplayed()) {
+                // the tab already shows this rendering.
+                return webTab.getLoadFuture().copy();
             }
-            return null;
-        });
+            return applyTemplate(webTab, renderedTemplate, tabOptions, false);
+        }), tabKey.toHexString());
     }
 
-    private Future<Void> displayURL(final String url, boolean show, final boolean reload) {
-        return runTask(() -> {
-            loadWebEngine(url).load(url, reload);
-            if (show) {
-                setVisible(show);
+    /**
+     * Renderings of a template share one tab, so a new rendering only patches the changed variables of the previous one.
+     * Pinned and high priority renderings get a tab of their own instead, so they are never overwritten by later renderings of the same template.
+     * A rendering which is already preloaded is displayed by its preloaded tab.
+     * Needs to be called from the fx application thread.
+     */
+    private ContentKey templateTabKey(final RenderedTemplate renderedTemplate, final TabOptions tabOptions) {
+        final ContentKey renderingKey = renderedTemplate.getRenderingKey();
+        if (tabOptions.pinned || tabOptions.priority == TabPool.Priority.HIGH || tabPool.get(renderingKey) != null) {
+            return renderingKey;
+        }
+        return renderedTemplate.getTemplateKey();
+    }
+
+    /**
+     * Applies the given template rendering to the given tab.
+     * If the tab already shows the same template and only bound variables have changed, just these variables are patched within the live dom.
+     * Otherwise, or if patching fails, the tab is reloaded. A display request is placed right away and waits for the patch or the reload.
+     * Needs to be called from the fx application thread.
+     *
+     * @param display true to bring the tab to the front afterwards, false to only load the rendering.
+     *
+     * @return a future which is completed as soon as the rendering is displayed or, if not displayed, loaded.
+     */
+    private CompletableFuture<Void> applyTemplate(final WebTab webTab, final RenderedTemplate renderedTemplate, final TabOptions tabOptions, final boolean display) throws CouldNotPerformException {
+        final Map<String, String> changedVariables = renderedTemplate.diff(webTab.getRenderedTemplate());
+        if (changedVariables == null) {
+            return reloadTemplate(webTab, renderedTemplate, display);
+        }
+
+        webTab.updateRenderedTemplate(renderedTemplate);
+        if (changedVariables.isEmpty()) {
+            return display ? webTab.displayTab() : webTab.getLoadFuture().copy();
+        }
+
+        final CompletableFuture<Void> renderFuture = domPatcher.patchVariables(webTab, changedVariables)
+                .handle((result, ex) -> {
+                    if (ex == null) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    return runTask(tabOptions.commandPriority, () -> {
+                        if (webTab.getRenderedTemplate() != renderedTemplate) {
+                            // a later rendering was applied meanwhile, so reloading this one would overwrite it.
+                            throw new CommandSupersededException(renderedTemplate + " superseded by a later rendering.");
+                        }
+                        logger.warn("Could not patch " + renderedTemplate + ", reload tab instead.");
+                        return reloadTemplate(webTab, renderedTemplate, false);
+                    }).thenCompose(reloadFuture -> reloadFuture);
+                }).thenCompose(future -> future);
+
+        // the switch is requested right away, so a later display request still wins even if it is ready before the patch.
+        return display ? webTab.displayTab(renderFuture) : renderFuture;
+    }
+
+    private CompletableFuture<Void> reloadTemplate(final WebTab webTab, final RenderedTemplate renderedTemplate, final boolean display) throws CouldNotPerformException {
+        final CompletableFuture<Void> future;
+        if (display) {
+            future = webTab.loadContent(renderedTemplate.getHtml(), true);
+        } else {
+            future = webTab.preloadContent(renderedTemplate.getHtml(), true);
+        }
+        webTab.updateRenderedTemplate(renderedTemplate);
+        return future;
+    }
+
+    /**
+     * Displays the given template rendering as soon as it is validated.
+     * Renderings are dispatched in request order, so a rendering whose validation takes longer is never displayed after a later request.
+     */
+    private CompletableFuture<Void> displayTemplate(final CompletableFuture<RenderedTemplate> renderFuture, boolean show, final TabOptions tabOptions) {
+        return inRequestOrder(renderFuture).thenCompose(renderedTemplate -> dispatchTemplate(renderedTemplate, show, tabOptions));
+    }
+
+    private CompletableFuture<Void> displayTemplate(final RenderedTemplate renderedTemplate, boolean show, final TabOptions tabOptions) {
+        return displayTemplate(CompletableFuture.completedFuture(renderedTemplate), show, tabOptions);
+    }
+
+    private synchronized <V> CompletableFuture<V> inRequestOrder(final CompletableFuture<V> requestFuture) {
+        final CompletableFuture<V> orderedFuture = renderOrderFuture.thenCompose(previous -> requestFuture);
+        renderOrderFuture = orderedFuture.handle((result, ex) -> null);
+        return orderedFuture;
+    }
+
+    /**
+     * Displays the given text either by the native tab or by the text template.
+     */
+    private Future<Void> displayText(final String text, final Color color, final boolean show, final CommandQueue.Priority priority) {
+        if (nativeTab == null) {
+            try {
+                return displayTemplate(htmlLoader.loadTextView(text, color), show, TabOptions.of(priority));
+            } catch (CouldNotPerformException ex) {
+                return FutureProcessor.canceledFuture(Void.class, ex);
             }
-            return null;
-        });
+        }
+        return displayNative(() -> nativeTab.displayText(text, color), show, priority);
+    }
+
+    /**
+     * Displays the given image either by the native tab or by the image template.
+     */
+    private Future<Void> displayImage(final String image, final boolean show) {
+        if (nativeTab == null) {
+            return displayTemplate(htmlLoader.loadImageView(image), show, TabOptions.DEFAULT);
+        }
+        return displayNative(() -> nativeTab.displayImage(image), show, CommandQueue.Priority.CONTENT);
+    }
+
+    private CompletableFuture<Void> displayNative(final Callable<CompletableFuture<Void>> display, final boolean show, final CommandQueue.Priority priority) {
+        return inRequestOrder(CompletableFuture.completedFuture(null)).thenCompose(ordered -> awaitRendering(runContentTask(show, priority, display), null));
+    }
+
+    private Future<Void> displayURL(final String url, boolean show, final boolean reload) {
+        return awaitRendering(runContentTask(show, CommandQueue.Priority.CONTENT, () -> {
+            return loadWebEngine(ContentKey.of(url)).load(url, reload);
+        }), null);
+    }
+
+    private CompletableFuture<String> preloadHTML(final String html, final TabOptions tabOptions) {
+        final ContentKey contentKey = ContentKey.of(html);
+        return awaitRendering(runTask(() -> {
+            return loadWebEngine(contentKey, tabOptions).preloadContent(html);
+        }), contentKey.toHexString());
+    }
+
+    private Future<String> preloadURL(final String url) {
+        final ContentKey contentKey = ContentKey.of(url);
+        return awaitRendering(runTask(() -> {
+            return loadWebEngine(contentKey).preload(url);
+        }), contentKey.toHexString());
+    }
+
+    /**
+     * Resolves the result of a display request either as soon as the request is dispatched to the fx thread
+     * or, if rendering should be awaited, once the content is loaded and displayed.
+     *
+     * @param dispatchFuture the future of the dispatched request providing the render future.
+     * @param result         the result to provide.
+     * @param <V>            the result type.
+     *
+     * @return the future of the request.
+     */
+    private <V> CompletableFuture<V> awaitRendering(final CompletableFuture<CompletableFuture<Void>> dispatchFuture, final V result) {
+        if (!awaitRendering) {
+            return dispatchFuture.thenApply(renderFuture -> result);
+        }
+        return dispatchFuture.thenCompose(renderFuture -> renderFuture).thenApply(rendered -> result);
     }
 
     /**
@@ -310,11 +738,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> showInfoText(final String presetId) {
         logger.info("show info text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.FORESTGREEN.darker()), true, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.FORESTGREEN.darker(), true, CommandQueue.Priority.INFO);
     }
 
     /**
@@ -327,11 +751,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> showWarnText(final String presetId) {
         logger.info("show warning text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.ORANGE), true, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.ORANGE, true, CommandQueue.Priority.WARN);
     }
 
     /**
@@ -344,11 +764,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> showErrorText(final String presetId) {
         logger.info("show error text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.RED.darker()), true, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.RED.darker(), true, CommandQueue.Priority.ERROR);
     }
 
     /**
@@ -361,11 +777,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> showText(final String presetId) {
         logger.info("show text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.BLACK), true, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.BLACK, true, CommandQueue.Priority.CONTENT);
     }
 
     /**
@@ -378,11 +790,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> showImage(final String image) {
         logger.info("show image: " + image);
-        try {
-            return displayHTML(htmlLoader.loadImageView(image), true, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayImage(image, true);
     }
 
     /**
@@ -421,11 +829,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> setInfoText(final String presetId) {
         logger.info("set info text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.FORESTGREEN.darker()), false, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.FORESTGREEN.darker(), false, CommandQueue.Priority.INFO);
     }
 
     /**
@@ -438,11 +842,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> setWarnText(final String presetId) {
         logger.info("set warning text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.ORANGE), false, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.ORANGE, false, CommandQueue.Priority.WARN);
     }
 
     /**
@@ -455,11 +855,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> setErrorText(final String presetId) {
         logger.info("set error text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.RED.darker()), false, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.RED.darker(), false, CommandQueue.Priority.ERROR);
     }
 
     /**
@@ -472,11 +868,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> setText(final String presetId) {
         logger.info("set text: " + presetId);
-        try {
-            return displayHTML(htmlLoader.loadTextView(presetId, Color.BLACK), false, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayText(presetId, Color.BLACK, false, CommandQueue.Priority.CONTENT);
     }
 
     /**
@@ -489,11 +881,7 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> setImage(final String image) {
         logger.info("set image:" + image);
-        try {
-            return displayHTML(htmlLoader.loadImageView(image), false, false);
-        } catch (CouldNotPerformException ex) {
-            return FutureProcessor.canceledFuture(Void.class, ex);
-        }
+        return displayImage(image, false);
     }
 
     /**
@@ -505,7 +893,11 @@ public class DisplayView extends Application implements Display {
      */
     @Override
     public Future<Void> setVisible(final Boolean visible) {
-        return runTask(() -> {
+        return setVisible(visible, CommandQueue.Priority.CONTROL);
+    }
+
+    private CompletableFuture<Void> setVisible(final boolean visible, final CommandQueue.Priority priority) {
+        return submit(CommandSlot.VISIBILITY, priority, () -> {
             if (visible) {
                 logger.info("show display");
                 Screen screen = getScreen();
@@ -531,17 +923,57 @@ public class DisplayView extends Application implements Display {
         });
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @param url {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> preloadUrl(final String url) {
+        logger.info("preload url: " + url);
+        return preloadURL(url);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param content {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> preloadHtmlContent(final String content) {
+        logger.info("preload html content: " + toSingleLine(content));
+        return preloadHTML(content, TabOptions.DEFAULT);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> preloadTemplate(final MetaConfig metaConfig) {
+        try {
+            final String template = resolveTemplate(metaConfig);
+            logger.info("preload template:" + template);
+            final TabOptions tabOptions = TabOptions.of(metaConfig);
+            return htmlLoader.loadTemplateView(template, metaConfig, false).thenCompose(renderedTemplate -> preloadTemplate(renderedTemplate, tabOptions));
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(String.class, ex);
+        }
+    }
+
     @Override
     public Future<Void> setTemplate(MetaConfig metaConfig) {
         try {
-            final Template template;
-            try {
-                template = Template.valueOf(new MetaConfigVariableProvider("passed parameters", metaConfig).getValue(Template.KEY_TEMPLATE));
-            } catch (IllegalArgumentException | CouldNotPerformException ex) {
-                throw new CouldNotPerformException("Could not resolve template!", ex);
-            }
-            logger.info("set template:" + template.name());
-            return displayHTML(htmlLoader.loadTemplateView(template, metaConfig, false), false, false);
+            final String template = resolveTemplate(metaConfig);
+            logger.info("set template:" + template);
+            return displayTemplate(htmlLoader.loadTemplateView(template, metaConfig, false), false, TabOptions.of(metaConfig));
         } catch (CouldNotPerformException ex) {
             return FutureProcessor.canceledFuture(Void.class, ex);
         }
@@ -550,19 +982,251 @@ public class DisplayView extends Application implements Display {
     @Override
     public Future<Void> showTemplate(MetaConfig metaConfig) {
         try {
-            final Template template;
-            try {
-                template = Template.valueOf(new MetaConfigVariableProvider("passed parameters", metaConfig).getValue(Template.KEY_TEMPLATE));
-            } catch (IllegalArgumentException | CouldNotPerformException ex) {
-                throw new CouldNotPerformException("Could not resolve template!", ex);
+            final String template = resolveTemplate(metaConfig);
+            logger.info("set template:" + template);
+            return displayTemplate(htmlLoader.loadTemplateView(template, metaConfig, false), true, TabOptions.of(metaConfig));
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(Void.class, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param contentKey {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> pinContent(final String contentKey) {
+        logger.info("pin content: " + contentKey);
+        try {
+            final ContentKey key = ContentKey.fromHexString(contentKey);
+            if (!tabPool.pin(key)) {
+                throw new CouldNotPerformException("Could not pin " + key + " because the content is not loaded or too many tabs are pinned!");
             }
-            logger.info("set template:" + template.name());
-            return displayHTML(htmlLoader.loadTemplateView(template, metaConfig, false), true, false);
+            return CompletableFuture.completedFuture(null);
         } catch (CouldNotPerformException ex) {
             return FutureProcessor.canceledFuture(Void.class, ex);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @param contentKey {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> unpinContent(final String contentKey) {
+        logger.info("unpin content: " + contentKey);
+        try {
+            final ContentKey key = ContentKey.fromHexString(contentKey);
+            if (!tabPool.unpin(key)) {
+                throw new NotAvailableException(key.toString());
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(Void.class, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<MetaConfig> getTabStates() {
+        final MetaConfig.Builder tabStates = MetaConfig.newBuilder();
+        for (final TabPool.TabState<ContentKey> tabState : tabPool.getTabStates()) {
+            tabStates.addEntry(Entry.newBuilder().setKey(tabState.getKey().toHexString()).setValue(tabState.toString()));
+        }
+        return CompletableFuture.completedFuture(tabStates.build());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<MetaConfig> getDisplayState() {
+        return runTask(this::snapshotDisplayState);
+    }
+
+    /**
+     * Takes a snapshot of the display state. Needs to be called from the fx application thread.
+     * While the displayed content is still loading, a further update is requested so the final load state is published as well.
+     */
+    private MetaConfig snapshotDisplayState() {
+        final DisplayTab frontTab = displaySwitcher.getFrontTab();
+        final String loadState;
+        if (frontTab == null) {
+            loadState = "NONE";
+        } else if (displaySwitcher.getPendingSwitchCount() > 0 || !frontTab.getLoadFuture().isDone()) {
+            loadState = "LOADING";
+            displayStatePublisher.requestUpdate();
+        } else if (frontTab.getLoadFuture().isCompletedExceptionally()) {
+            loadState = "FAILED";
+        } else {
+            loadState = "LOADED";
+        }
+        final ContentKey frontContentKey = frontTab != null ? frontTab.getContentKey() : null;
+        final TabPool.Stats tabPoolStats = tabPool.stats();
+
+        return MetaConfig.newBuilder()
+                .addEntry(Entry.newBuilder().setKey(STATE_FRONT_CONTENT).setValue(frontContentKey != null ? frontContentKey.toHexString() : ""))
+                .addEntry(Entry.newBuilder().setKey(STATE_VISIBLE).setValue(Boolean.toString(primaryStage != null && primaryStage.isShowing())))
+                .addEntry(Entry.newBuilder().setKey(STATE_LOAD).setValue(loadState))
+                .addEntry(Entry.newBuilder().setKey(STATE_TAB_POOL_SIZE).setValue(Integer.toString(tabPoolStats.getSize())))
+                .addEntry(Entry.newBuilder().setKey(STATE_TAB_POOL_HITS).setValue(Long.toString(tabPoolStats.getHits())))
+                .addEntry(Entry.newBuilder().setKey(STATE_TAB_POOL_EVICTIONS).setValue(Long.toString(tabPoolStats.getEvictions())))
+                .addEntry(Entry.newBuilder().setKey(STATE_COMMAND_QUEUE_DEPTH).setValue(Integer.toString(commandQueue.stats().getPending())))
+                .build();
+    }
+
+    private void publishDisplayState(final MetaConfig displayState) {
+        // the broadcast scope is shared by all displays, so the state of a single display is only published on its own scope.
+        if (displayServer == null) {
+            return;
+        }
+        try {
+            displayServer.updateDisplayState(displayState);
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory(ex, logger);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> patchElement(final MetaConfig metaConfig) {
+        try {
+            final MetaConfigVariableProvider variableProvider = new MetaConfigVariableProvider("passed parameters", metaConfig);
+            return domPatcher.patchElement(resolvePatchTab(metaConfig), variableProvider.getValue(KEY_ELEMENT_ID), variableProvider.getValue(KEY_HTML));
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(Void.class, new CouldNotPerformException("Could not patch element!", ex));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<Void> setElementText(final MetaConfig metaConfig) {
+        try {
+            final MetaConfigVariableProvider variableProvider = new MetaConfigVariableProvider("passed parameters", metaConfig);
+            return domPatcher.setElementText(resolvePatchTab(metaConfig), variableProvider.getValue(KEY_ELEMENT_ID), variableProvider.getValue(KEY_TEXT));
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(Void.class, new CouldNotPerformException("Could not set element text!", ex));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param metaConfig {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<String> executeOnTab(final MetaConfig metaConfig) {
+        try {
+            final MetaConfigVariableProvider variableProvider = new MetaConfigVariableProvider("passed parameters", metaConfig);
+            return domPatcher.execute(resolvePatchTab(metaConfig), variableProvider.getValue(KEY_SCRIPT));
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(String.class, new CouldNotPerformException("Could not execute script!", ex));
+        }
+    }
+
+    /**
+     * Resolves the tab selected by the optional tab key, or the displayed tab if no key is given.
+     */
+    private WebTab resolvePatchTab(final MetaConfig metaConfig) throws CouldNotPerformException {
+        for (final Entry entry : metaConfig.getEntryList()) {
+            if (!entry.getKey().equals(KEY_TAB)) {
+                continue;
+            }
+            final ContentKey contentKey = ContentKey.fromHexString(entry.getValue());
+            final WebTab webTab = tabPool.get(contentKey);
+            if (webTab == null) {
+                throw new NotAvailableException("Tab[" + contentKey + "]");
+            }
+            return webTab;
+        }
+
+        final DisplayTab frontTab = displaySwitcher.getFrontTab();
+        if (!(frontTab instanceof WebTab)) {
+            throw new NotAvailableException("displayed web tab");
+        }
+        return (WebTab) frontTab;
+    }
+
+    private String resolveTemplate(final MetaConfig metaConfig) throws CouldNotPerformException {
+        try {
+            final String template = new MetaConfigVariableProvider("passed parameters", metaConfig).getValue(Template.KEY_TEMPLATE);
+            htmlLoader.getTemplateRegistry().get(template);
+            return template;
+        } catch (CouldNotPerformException ex) {
+            throw new CouldNotPerformException("Could not resolve template!", ex);
+        }
+    }
+
+    /**
+     * Updates all tabs showing the given template after the template has changed.
+     * A displayed tab is reloaded in place with the new template version, all others are released so their next request renders the new version.
+     */
+    private void invalidateTemplateTab(final String templateName) {
+        final ContentKey templateKey = RenderedTemplate.templateKey(templateName);
+        Platform.runLater(() -> {
+            for (final WebTab webTab : tabPool.getTabs()) {
+                final RenderedTemplate renderedTemplate = webTab.getRenderedTemplate();
+                if (templateKey.equals(webTab.getContentKey()) || (renderedTemplate != null && renderedTemplate.getTemplateId().equals(templateName))) {
+                    invalidateTemplateTab(webTab, templateName);
+                }
+            }
+        });
+    }
+
+    private void invalidateTemplateTab(final WebTab webTab, final String templateName) {
+        final ContentKey tabKey = webTab.getContentKey();
+        final RenderedTemplate renderedTemplate = webTab.getRenderedTemplate();
+        if (webTab.isDisplayed() && renderedTemplate != null) {
+            try {
+                final RenderedTemplate updatedTemplate = htmlLoader.rerender(renderedTemplate);
+                webTab.loadContent(updatedTemplate.getHtml(), true);
+                webTab.updateRenderedTemplate(updatedTemplate);
+                logger.info("reload " + updatedTemplate + " after template change.");
+                return;
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not apply change of Template[" + templateName + "] to displayed tab!", ex), logger);
+            }
+        }
+
+        if (webTab.isDisplayed()) {
+            // keep the outdated content visible, but make sure the next request reloads the tab.
+            webTab.markContentModified();
+            return;
+        }
+        tabPool.evict(tabKey);
+        webTab.clear();
+        if (!tabPool.offerIdle(webTab)) {
+            webTab.dispose();
+        }
+        logger.debug("release " + tabKey + " after change of Template[" + templateName + "].");
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -570,21 +1234,35 @@ public class DisplayView extends Application implements Display {
      */
     @Override
     public Future<Void> closeAll() {
-        return runTask(() -> {
+        return runTask(CommandQueue.Priority.CONTROL, () -> {
             logger.info("close all");
             setVisible(false).get();
-            synchronized (TAB_LOCK) {
-                for (WebTab webTab : new ArrayList<>(webTabMap.values())) {
-                    webTab.getEngine().getLoadWorker().cancel();
-                    webTab.getEngine().load(null);
-                    webTabMap.remove(webTab.getContentHash());
-                    webTab.updateContextHash(0);
+            for (WebTab webTab : tabPool.evictAll()) {
+                webTab.clear();
+                if (!tabPool.offerIdle(webTab)) {
+                    webTab.dispose();
                 }
             }
             return null;
         });
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All commands are dispatched within one task on the fx application thread, so the nested commands are applied inline and in order.
+     * Commands which need to prepare their content in background, e.g. templates referring images, keep their request order but complete afterwards.
+     *
+     * @param batch {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Future<MetaConfig> applyBatch(final MetaConfig batch) {
+        logger.info("apply batch of " + batch.getEntryCount() + " entries");
+        return runTask(CommandQueue.Priority.CONTROL, () -> DisplayBatch.apply(this, batch)).thenCompose(results -> results);
+    }
+
     private Screen getScreen() {
         try {
 
@@ -624,28 +1302,91 @@ public class DisplayView extends Application implements Display {
         return primaryStage;
     }
 
-    private <V> Future<V> runTask(final Callable<V> callable) {
-        try {
+    private <V> CompletableFuture<V> runTask(final Callable<V> callable) {
+        return runTask(CommandQueue.Priority.CONTENT, callable);
+    }
 
-            if (Platform.isFxApplicationThread()) {
-                try {
-                    return CompletableFuture.completedFuture(callable.call());
-                } catch (Exception ex) {
-                    ExceptionPrinter.printHistory(new CouldNotPerformException("Could not perform task!", ex), logger);
-                }
-            }
+    private <V> CompletableFuture<V> runTask(final CommandQueue.Priority priority, final Callable<V> callable) {
+        return submit(null, priority, callable);
+    }
 
-            FutureTask<V> future = new FutureTask(() -> {
-                try {
-                    return callable.call();
-                } catch (Exception ex) {
-                    throw ExceptionPrinter.printHistoryAndReturnThrowable(ex, logger);
-                }
-            });
-            Platform.runLater(future);
-            return future;
-        } catch (Exception ex) {
-            return FutureProcessor.canceledFuture(new CouldNotPerformException("Could not perform task!", ex));
+    /**
+     * Runs a task which replaces the displayed content. Only the latest pending content task is executed, all earlier ones of the same or a lower priority are superseded.
+     * The display is set visible by a separate command, so pending visibility changes are merged independently of the content.
+     */
+    private <V> CompletableFuture<V> runContentTask(final boolean show, final CommandQueue.Priority priority, final Callable<V> callable) {
+        if (show) {
+            setVisible(true, priority);
+        }
+        return submit(CommandSlot.CONTENT, priority, callable);
+    }
+
+    /**
+     * Submits the given task to the command queue and publishes the display state once the task is done.
+     */
+    private <V> CompletableFuture<V> submit(final CommandSlot slot, final CommandQueue.Priority priority, final Callable<V> callable) {
+        final CompletableFuture<V> future = commandQueue.submit(slot, priority, callable);
+        future.whenComplete((result, ex) -> displayStatePublisher.requestUpdate());
+        return future;
+    }
+
+    /**
+     * Slots of the command queue. Pending commands of the same slot are superseded by later ones of at least the same priority.
+     */
+    private enum CommandSlot {
+        CONTENT,
+        VISIBILITY
+    }
+
+    /**
+     * Tab pool settings and command priority of a display request.
+     */
+    private static class TabOptions {
+
+        private static final TabOptions DEFAULT = new TabOptions(null, false, CommandQueue.Priority.CONTENT);
+
+        private final TabPool.Priority priority;
+        private final boolean pinned;
+        private final CommandQueue.Priority commandPriority;
+
+        private TabOptions(final TabPool.Priority priority, final boolean pinned, final CommandQueue.Priority commandPriority) {
+            this.priority = priority;
+            this.pinned = pinned;
+            this.commandPriority = commandPriority;
+        }
+
+        private static TabOptions of(final CommandQueue.Priority commandPriority) {
+            return new TabOptions(null, false, commandPriority);
+        }
+
+        private static TabOptions of(final MetaConfig metaConfig) throws CouldNotPerformException {
+            final MetaConfigVariableProvider variableProvider = new MetaConfigVariableProvider("passed parameters", metaConfig);
+            TabPool.Priority priority = null;
+            boolean pinned = false;
+            try {
+                priority = TabPool.Priority.valueOf(variableProvider.getValue(KEY_PRIORITY).toUpperCase());
+            } catch (NotAvailableException ex) {
+                // use default priority
+            } catch (IllegalArgumentException ex) {
+                throw new CouldNotPerformException("Could not resolve tab priority!", ex);
+            }
+            try {
+                pinned = Boolean.parseBoolean(variableProvider.getValue(KEY_PINNED));
+            } catch (NotAvailableException ex) {
+                // not pinned by default
+            }
+            CommandQueue.Priority commandPriority = CommandQueue.Priority.CONTENT;
+            try {
+                commandPriority = CommandQueue.Priority.valueOf(variableProvider.getValue(KEY_COMMAND_PRIORITY).toUpperCase());
+            } catch (NotAvailableException ex) {
+                // use default priority
+            } catch (IllegalArgumentException ex) {
+                throw new CouldNotPerformException("Could not resolve command priority!", ex);
+            }
+            if (commandPriority == CommandQueue.Priority.CONTROL) {
+                throw new CouldNotPerformException("Command priority " + commandPriority + " is reserved for control commands!");
+            }
+            return new TabOptions(priority, pinned, commandPriority);
         }
     }
 
@@ -662,6 +1403,21 @@ public class DisplayView extends Application implements Display {
         JPService.registerProperty(JPOutput.class);
         JPService.registerProperty(JPMessage.class);
         JPService.registerProperty(JPTabAmount.class);
+        JPService.registerProperty(JPTabMemoryBudget.class);
+        JPService.registerProperty(JPLowTabQuota.class);
+        JPService.registerProperty(JPNormalTabQuota.class);
+        JPService.registerProperty(JPHighTabQuota.class);
+        JPService.registerProperty(JPTabPrewarmAmount.class);
+        JPService.registerProperty(JPTabIdleTimeout.class);
+        JPService.registerProperty(JPAwaitRendering.class);
+        JPService.registerProperty(JPHotTabAmount.class);
+        JPService.registerProperty(JPUserDataCacheSize.class);
+        JPService.registerProperty(JPRenderCacheSize.class);
+        JPService.registerProperty(JPTemplateDirectory.class);
+        JPService.registerProperty(JPNativeRenderer.class);
+        JPService.registerProperty(JPImageCacheSize.class);
+        JPService.registerProperty(JPCommandQueueSize.class);
+        JPService.registerProperty(JPTabCrossfadeDuration.class);
         JPService.registerProperty(JPUrl.class);
         JPService.registerProperty(JPImageUrl.class);
         JPService.registerProperty(JPVisible.class);
@@ -0,0 +1,312 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.application.Platform;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.InvalidStateException;
+import org.openbase.jul.exception.NotAvailableException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies incremental changes to the dom of already loaded tabs, so small updates do not require to reload the whole page.
+ * <p>
+ * Patches can be submitted from any thread. They are collected and applied in a single pass on the fx application thread,
+ * where consecutive element patches of the same tab are combined into a single script execution.
+ * A patch waits until the content of its tab is loaded and fails if the tab started any other load in the meantime,
+ * even if the new load belongs to the same content key, e.g. a reload of a template tab.
+ * Patched tabs are marked as modified, so a later display request of their original content reloads them.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DomPatcher {
+
+    private final ConcurrentLinkedQueue<Patch<?>> pendingPatches;
+    private final AtomicBoolean flushScheduled;
+
+    public DomPatcher() {
+        this.pendingPatches = new ConcurrentLinkedQueue<>();
+        this.flushScheduled = new AtomicBoolean();
+    }
+
+    /**
+     * Replaces the inner html of an element.
+     *
+     * @param webTab    the tab to patch.
+     * @param elementId the id of the element to patch.
+     * @param html      the new inner html of the element.
+     *
+     * @return a future which is completed as soon as the patch is applied.
+     */
+    public CompletableFuture<Void> patchElement(final WebTab webTab, final String elementId, final String html) {
+        return submit(new Patch<>(webTab, elementSelector(elementId), "Element[" + elementId + "]", "innerHTML", html, true));
+    }
+
+    /**
+     * Replaces the text of an element. The text is never interpreted as html.
+     *
+     * @param webTab    the tab to patch.
+     * @param elementId the id of the element to patch.
+     * @param text      the new text of the element.
+     *
+     * @return a future which is completed as soon as the patch is applied.
+     */
+    public CompletableFuture<Void> setElementText(final WebTab webTab, final String elementId, final String text) {
+        return submit(new Patch<>(webTab, elementSelector(elementId), "Element[" + elementId + "]", "textContent", text, true));
+    }
+
+    /**
+     * Updates the values of bound template variables, see {@link RenderedTemplate}.
+     * In contrast to the other patches the tab is not marked as modified, because the caller keeps track of its rendering.
+     *
+     * @param webTab    the tab to patch.
+     * @param variables the bound variables to update.
+     *
+     * @return a future which is completed as soon as all variables are updated.
+     */
+    public CompletableFuture<Void> patchVariables(final WebTab webTab, final Map<String, String> variables) {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(variables.size());
+        for (final Map.Entry<String, String> variable : variables.entrySet()) {
+            final String selector = "document.querySelectorAll(" + toJavaScriptString(variableSelector(variable.getKey())) + ")";
+            futures.add(submit(new Patch<>(webTab, selector, "Variable[" + variable.getKey() + "]", "textContent", variable.getValue(), false)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Executes the given java script on the tab.
+     *
+     * @param webTab the tab to execute the script on.
+     * @param script the script to execute.
+     *
+     * @return a future which provides the string representation of the script result.
+     */
+    public CompletableFuture<String> execute(final WebTab webTab, final String script) {
+        return submit(new Patch<>(webTab, script));
+    }
+
+    private <V> CompletableFuture<V> submit(final Patch<V> patch) {
+        patch.webTab.getLoadFuture().whenComplete((result, ex) -> {
+            if (ex != null) {
+                patch.future.completeExceptionally(new CouldNotPerformException("Could not patch tab because its content could not be loaded!", ex));
+                return;
+            }
+            pendingPatches.add(patch);
+            if (flushScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::flush);
+            }
+        });
+        return patch.future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void flush() {
+        flushScheduled.set(false);
+
+        // group patches by tab while keeping their order.
+        final Map<WebTab, List<Patch<?>>> tabPatchMap = new LinkedHashMap<>();
+        Patch<?> patch;
+        while ((patch = pendingPatches.poll()) != null) {
+            if (patch.future.isDone()) {
+                continue;
+            }
+            if (!Objects.equals(patch.contentKey, patch.webTab.getContentKey()) || patch.loadGeneration != patch.webTab.getLoadGeneration()) {
+                patch.future.completeExceptionally(new InvalidStateException("Could not patch tab because its content has been replaced!"));
+                continue;
+            }
+            tabPatchMap.computeIfAbsent(patch.webTab, webTab -> new ArrayList<>()).add(patch);
+        }
+
+        for (final Map.Entry<WebTab, List<Patch<?>>> entry : tabPatchMap.entrySet()) {
+            final List<Patch<?>> elementPatches = new ArrayList<>();
+            for (final Patch<?> tabPatch : entry.getValue()) {
+                if (tabPatch.script == null) {
+                    elementPatches.add(tabPatch);
+                    continue;
+                }
+                applyElementPatches(entry.getKey(), elementPatches);
+                elementPatches.clear();
+                applyScript(entry.getKey(), (Patch<String>) tabPatch);
+            }
+            applyElementPatches(entry.getKey(), elementPatches);
+            if (entry.getValue().stream().anyMatch(tabPatch -> tabPatch.modifiesContent)) {
+                entry.getKey().markContentModified();
+            }
+        }
+    }
+
+    private void applyElementPatches(final WebTab webTab, final List<Patch<?>> elementPatches) {
+        if (elementPatches.isEmpty()) {
+            return;
+        }
+
+        // the script returns one flag per patch which states if any element was found.
+        final StringBuilder script = new StringBuilder("(function() { var r = ''; var e; var i;");
+        for (final Patch<?> elementPatch : elementPatches) {
+            script.append(" e = ").append(elementPatch.selector).append(";")
+                    .append(" for (i = 0; i < e.length; i++) { e[i].").append(elementPatch.property).append(" = ").append(toJavaScriptString(elementPatch.value)).append("; }")
+                    .append(" r += e.length ? '1' : '0';");
+        }
+        script.append(" return r; })()");
+
+        final String appliedFlags;
+        try {
+            appliedFlags = String.valueOf(webTab.getEngine().executeScript(script.toString()));
+        } catch (RuntimeException ex) {
+            for (final Patch<?> elementPatch : elementPatches) {
+                elementPatch.future.completeExceptionally(new CouldNotPerformException("Could not patch " + elementPatch.target + "!", ex));
+            }
+            return;
+        }
+
+        for (int i = 0; i < elementPatches.size(); i++) {
+            final Patch<?> elementPatch = elementPatches.get(i);
+            if (i < appliedFlags.length() && appliedFlags.charAt(i) == '1') {
+                elementPatch.future.complete(null);
+            } else {
+                elementPatch.future.completeExceptionally(new NotAvailableException(elementPatch.target));
+            }
+        }
+    }
+
+    private void applyScript(final WebTab webTab, final Patch<String> scriptPatch) {
+        try {
+            scriptPatch.future.complete(String.valueOf(webTab.getEngine().executeScript(scriptPatch.script)));
+        } catch (RuntimeException ex) {
+            scriptPatch.future.completeExceptionally(new CouldNotPerformException("Could not execute script!", ex));
+        }
+    }
+
+    private static String elementSelector(final String elementId) {
+        return "[document.getElementById(" + toJavaScriptString(elementId) + ")].filter(Boolean)";
+    }
+
+    /**
+     * Builds the css selector of the placeholder elements of a bound variable.
+     * The key is escaped as css string, so any key results in a valid selector which only matches its own placeholders.
+     *
+     * @param key the key of the bound variable.
+     *
+     * @return the css selector.
+     */
+    static String variableSelector(final String key) {
+        final StringBuilder selector = new StringBuilder(key.length() + 16).append('[').append(RenderedTemplate.BINDING_ATTRIBUTE).append("=\"");
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            if (c == '"' || c == '\\') {
+                selector.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f) {
+                // control characters are escaped by their hex code, the trailing space terminates the escape.
+                selector.append('\\').append(Integer.toHexString(c)).append(' ');
+            } else {
+                selector.append(c);
+            }
+        }
+        return selector.append("\"]").toString();
+    }
+
+    /**
+     * Quotes the given string as java script string literal.
+     *
+     * @param value the string to quote.
+     *
+     * @return the string literal.
+     */
+    public static String toJavaScriptString(final String value) {
+        final StringBuilder literal = new StringBuilder(value.length() + 2).append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\'':
+                case '\\':
+                    literal.append('\\').append(c);
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\u2028':
+                case '\u2029':
+                case '<':
+                    literal.append(String.format("\\u%04x", (int) c));
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('\'').toString();
+    }
+
+    private static class Patch<V> {
+
+        private final WebTab webTab;
+        private final ContentKey contentKey;
+        private final long loadGeneration;
+        private final String selector;
+        private final String target;
+        private final String property;
+        private final String value;
+        private final String script;
+        private final boolean modifiesContent;
+        private final CompletableFuture<V> future;
+
+        /**
+         * Creates a patch which assigns the value to the given property of all elements returned by the selector expression.
+         */
+        private Patch(final WebTab webTab, final String selector, final String target, final String property, final String value, final boolean modifiesContent) {
+            this.webTab = webTab;
+            this.contentKey = webTab.getContentKey();
+            this.loadGeneration = webTab.getLoadGeneration();
+            this.selector = selector;
+            this.target = target;
+            this.property = property;
+            this.value = value;
+            this.script = null;
+            this.modifiesContent = modifiesContent;
+            this.future = new CompletableFuture<>();
+        }
+
+        private Patch(final WebTab webTab, final String script) {
+            this.webTab = webTab;
+            this.contentKey = webTab.getContentKey();
+            this.loadGeneration = webTab.getLoadGeneration();
+            this.selector = null;
+            this.target = null;
+            this.property = null;
+            this.value = null;
+            this.script = script;
+            this.modifiesContent = true;
+            this.future = new CompletableFuture<>();
+        }
+    }
+}
@@ -22,8 +22,16 @@ package org.openbase.display;
  * #L%
  */
 
+import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javafx.scene.paint.Color;
 import javafx.stage.Screen;
@@ -31,11 +39,6 @@ import org.apache.commons.io.IOUtils;
 import org.openbase.jps.core.JPService;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InstantiationException;
-import org.openbase.jul.exception.VerificationFailedException;
-import org.openbase.jul.extension.type.processing.MetaConfigVariableProvider;
-import org.openbase.jul.processing.VariableProcessor;
-import org.openbase.jul.processing.VariableProvider;
-import org.openbase.jul.processing.VariableStore;
 import org.openbase.type.configuration.EntryType.Entry;
 import org.openbase.type.configuration.MetaConfigType.MetaConfig;
 
@@ -54,12 +57,13 @@ public class HTMLLoader {
         public static final String KEY_TEMPLATE = "TEMPLATE";
         private final String uri;
         private String template;
+        private CompiledTemplate compiledTemplate;
 
         Template(final String uri) {
             this.uri = uri;
         }
 
-        public String getTemplate() throws CouldNotPerformException {
+        public synchronized String getTemplate() throws CouldNotPerformException {
             if (template == null) {
                 try {
                     template = IOUtils.toString(ResourceStreamLoader.loadFileInputStream(uri), "UTF-8");
@@ -70,12 +74,16 @@ public class HTMLLoader {
             return template;
         }
 
-        private void verify() throws VerificationFailedException {
-            try {
-                getTemplate();
-            } catch (CouldNotPerformException ex) {
-                throw new VerificationFailedException("Could not load " + this + "!", ex);
+        /**
+         * @return the template parsed into literal and variable segments, which is compiled only once.
+         *
+         * @throws CouldNotPerformException is thrown if the template could not be loaded or parsed.
+         */
+        public synchronized CompiledTemplate getCompiledTemplate() throws CouldNotPerformException {
+            if (compiledTemplate == null) {
+                compiledTemplate = CompiledTemplate.compile(name(), getTemplate());
             }
+            return compiledTemplate;
         }
 
         @Override
@@ -85,73 +93,245 @@ public class HTMLLoader {
 
     }
 
-    private final VariableStore globalVariableStore;
+    public static final int DEFAULT_RENDER_CACHE_SIZE = 64;
+
+    /**
+     * Read-only variables available to all templates. The context is replaced as a whole, so concurrent renderings never see partial updates.
+     */
+    private volatile VariableContext globalVariableContext;
+    private final RenderCache renderCache;
+    private final UriValidator uriValidator;
+    private final TemplateRegistry templateRegistry;
+    private volatile ImagePipeline imagePipeline;
+    private volatile int screenWidth, screenHeight;
 
     public HTMLLoader() throws InstantiationException {
-        try {
-            this.globalVariableStore = new VariableStore(HTMLLoader.class.getSimpleName());
+        this(DEFAULT_RENDER_CACHE_SIZE);
+    }
 
-            //verify templates
-            for (Template template : Template.values()) {
-                template.verify();
-            }
-        } catch (CouldNotPerformException ex) {
-            throw new InstantiationException(this, ex);
-        }
+    /**
+     * @param renderCacheSize the maximal amount of cached renderings, 0 disables the cache.
+     *
+     * @throws InstantiationException is thrown if the templates could not be loaded.
+     */
+    public HTMLLoader(final int renderCacheSize) throws InstantiationException {
+        this(renderCacheSize, null);
+    }
+
+    /**
+     * @param renderCacheSize   the maximal amount of cached renderings, 0 disables the cache.
+     * @param templateDirectory the directory of external templates, see {@link TemplateRegistry}, or null if only built-in templates should be provided.
+     *
+     * @throws InstantiationException is thrown if the templates could not be loaded.
+     */
+    public HTMLLoader(final int renderCacheSize, final File templateDirectory) throws InstantiationException {
+        this.globalVariableContext = VariableContext.EMPTY;
+        this.renderCache = new RenderCache(renderCacheSize);
+        this.uriValidator = new UriValidator();
+        this.templateRegistry = new TemplateRegistry(templateDirectory);
+        this.templateRegistry.addChangeListener(renderCache::invalidate);
     }
 
     public void init(final Screen screen) {
-        globalVariableStore.store("SCREEN_WIDTH", Double.toString(screen.getBounds().getWidth()));
-        globalVariableStore.store("SCREEN_HEIGHT", Double.toString(screen.getBounds().getHeight()));
-        globalVariableStore.store("APP", JPService.getApplicationName());
+        init(screen, null);
+    }
+
+    /**
+     * @param screen        the screen to render the templates for.
+     * @param imagePipeline the pipeline used to prepare images for the given screen, or null if images are referenced by their original uri.
+     */
+    public void init(final Screen screen, final ImagePipeline imagePipeline) {
+        this.screenWidth = (int) screen.getBounds().getWidth();
+        this.screenHeight = (int) screen.getBounds().getHeight();
+        this.imagePipeline = imagePipeline;
+        final Map<String, String> globalVariables = new HashMap<>();
+        globalVariables.put("SCREEN_WIDTH", Double.toString(screen.getBounds().getWidth()));
+        globalVariables.put("SCREEN_HEIGHT", Double.toString(screen.getBounds().getHeight()));
+        globalVariables.put("APP", JPService.getApplicationName());
+        globalVariableContext = VariableContext.EMPTY.layer(HTMLLoader.class.getSimpleName(), globalVariables);
+        renderCache.clear();
     }
 
-    public String loadTextView(final String text, final Color color) throws CouldNotPerformException {
+    /**
+     * @return the registry providing all templates by name.
+     */
+    public TemplateRegistry getTemplateRegistry() {
+        return templateRegistry;
+    }
+
+    /**
+     * @return a snapshot of the current render cache usage.
+     */
+    public RenderCache.Stats getRenderCacheStats() {
+        return renderCache.stats();
+    }
+
+    /**
+     * @return the read-only variables available to all templates.
+     */
+    public VariableContext getGlobalVariableContext() {
+        return globalVariableContext;
+    }
+
+    public RenderedTemplate loadTextView(final String text, final Color color) throws CouldNotPerformException {
         try {
-            globalVariableStore.store("TEXT", text);
-            globalVariableStore.store("COLOR", "rgb(" + (int) (color.getRed() * 255) + "," + (int) (color.getGreen() * 255) + "," + (int) (color.getBlue() * 255) + ")");
-            return buildContext(Template.TEXT_VIEW, globalVariableStore, true);
+            final Map<String, String> variables = new HashMap<>();
+            variables.put("TEXT", text);
+            variables.put("COLOR", "rgb(" + (int) (color.getRed() * 255) + "," + (int) (color.getGreen() * 255) + "," + (int) (color.getBlue() * 255) + ")");
+            return render(Template.TEXT_VIEW.name(), "text view", variables, true);
         } catch (CouldNotPerformException ex) {
             throw new CouldNotPerformException("Could not load TextView!", ex);
         }
     }
 
-    public String loadImageView(final String image) throws CouldNotPerformException {
-        try {
-            validateURI(image);
-            globalVariableStore.store("IMAGE", image);
-            return buildContext(Template.IMAGE_VIEW, globalVariableStore, true);
-        } catch (CouldNotPerformException ex) {
-            throw new CouldNotPerformException("Could not load ImageView!", ex);
-        }
+    /**
+     * Renders the image view. The image is prepared or validated asynchronously, see {@link #loadTemplateView(String, MetaConfig, boolean)}.
+     *
+     * @param image the uri of the image.
+     *
+     * @return a future providing the rendering as soon as the image is prepared.
+     */
+    public CompletableFuture<RenderedTemplate> loadImageView(final String image) {
+        return load(Template.IMAGE_VIEW.name(), "image view", Collections.singletonMap("IMAGE", image), true, UriValidator.Mode.CACHED, "ImageView");
     }
 
-    public String loadTemplateView(final Template template, final MetaConfig metaConfig, boolean failOnMissingVariables) throws CouldNotPerformException {
+    public CompletableFuture<RenderedTemplate> loadTemplateView(final Template template, final MetaConfig metaConfig, boolean failOnMissingVariables) {
+        return loadTemplateView(template.name(), metaConfig, failOnMissingVariables);
+    }
+
+    /**
+     * Renders the given template with the entries of the given meta config as variables.
+     * The values of all entries whose key contains {@code URL} or {@code IMAGE} are validated asynchronously and in parallel, see {@link UriValidator}.
+     * If an image pipeline is configured, images referenced by entries whose key contains {@code IMAGE} are prepared instead, see {@link ImagePipeline},
+     * and the template references the prepared local copy.
+     * How the validation uses its cache can be selected per call by the {@link Display#KEY_URI_VALIDATION} entry.
+     *
+     * @param templateName           the name of the template to render, see {@link TemplateRegistry}.
+     * @param metaConfig             the variables to render the template with.
+     * @param failOnMissingVariables if false, missing variables are resolved as empty string.
+     *
+     * @return a future providing the rendering as soon as all uris are validated and all images are prepared.
+     */
+    public CompletableFuture<RenderedTemplate> loadTemplateView(final String templateName, final MetaConfig metaConfig, boolean failOnMissingVariables) {
         try {
+            final Map<String, String> variables = new HashMap<>();
+            UriValidator.Mode validationMode = UriValidator.Mode.CACHED;
             for (Entry entry : metaConfig.getEntryList()) {
-                if (entry.getKey().contains("URL")) {
-                    validateURI(entry.getValue());
+                if (entry.getKey().equals(Display.KEY_URI_VALIDATION)) {
+                    validationMode = resolveValidationMode(entry.getValue());
                 }
+                variables.put(entry.getKey(), entry.getValue());
             }
-            return buildContext(template, new MetaConfigVariableProvider("passed parameters", metaConfig), failOnMissingVariables);
+            return load(templateName, "passed parameters", variables, failOnMissingVariables, validationMode, templateName);
         } catch (CouldNotPerformException ex) {
-            throw new CouldNotPerformException("Could not load ImageView!", ex);
+            return failedFuture(new CouldNotPerformException("Could not load " + templateName + "!", ex));
         }
     }
 
-    static String buildContext(final Template template, final VariableProvider variableProvider, boolean failOnMissingVariables) throws CouldNotPerformException {
+    /**
+     * Renders the current version of the template of the given rendering with the same variables.
+     *
+     * @param renderedTemplate the previous rendering.
+     *
+     * @return the new rendering.
+     *
+     * @throws CouldNotPerformException is thrown if the template is not available anymore or could not be rendered.
+     */
+    public RenderedTemplate rerender(final RenderedTemplate renderedTemplate) throws CouldNotPerformException {
+        final Map<String, String> variables = new HashMap<>(renderedTemplate.getUnboundVariables());
+        variables.putAll(renderedTemplate.getBoundVariables());
+        return render(renderedTemplate.getTemplateId(), "previous rendering", variables, false);
+    }
+
+    private static UriValidator.Mode resolveValidationMode(final String mode) throws CouldNotPerformException {
         try {
-            return VariableProcessor.resolveVariables(template.getTemplate(), failOnMissingVariables, variableProvider);
-        } catch (CouldNotPerformException ex) {
-            throw new CouldNotPerformException("Could not build context out of Template[" + template + "]!", ex);
+            return UriValidator.Mode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new CouldNotPerformException("Could not resolve uri validation mode!", ex);
+        }
+    }
+
+    /**
+     * Validates the uris and prepares the images referenced by the given variables in parallel and renders the template afterwards.
+     */
+    private CompletableFuture<RenderedTemplate> load(final String templateName, final String contextName, final Map<String, String> variables, final boolean failOnMissingVariables, final UriValidator.Mode mode, final String description) {
+        final Map<String, String> preparedVariables = new ConcurrentHashMap<>(variables);
+        final List<String> uris = new ArrayList<>();
+        final List<CompletableFuture<?>> preparations = new ArrayList<>();
+        final ImagePipeline imagePipeline = this.imagePipeline;
+        for (final Map.Entry<String, String> variable : variables.entrySet()) {
+            if (!variable.getKey().contains("URL") && !variable.getKey().contains("IMAGE")) {
+                continue;
+            }
+            if (imagePipeline != null && variable.getKey().contains("IMAGE")) {
+                preparations.add(prepareImage(imagePipeline, variable.getValue(), mode).thenAccept(preparedUri -> preparedVariables.put(variable.getKey(), preparedUri)));
+            } else {
+                uris.add(variable.getValue());
+            }
         }
+        preparations.add(uriValidator.validate(uris, mode));
+
+        final CompletableFuture<RenderedTemplate> future = new CompletableFuture<>();
+        CompletableFuture.allOf(preparations.toArray(new CompletableFuture[0])).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(new CouldNotPerformException("Could not load " + description + "!", throwable instanceof CompletionException ? throwable.getCause() : throwable));
+                return;
+            }
+            try {
+                future.complete(render(templateName, contextName, preparedVariables, failOnMissingVariables));
+            } catch (CouldNotPerformException ex) {
+                future.completeExceptionally(new CouldNotPerformException("Could not load " + description + "!", ex));
+            }
+        });
+        return future;
     }
 
-    private static void validateURI(final String uri) throws VerificationFailedException {
+    /**
+     * Prepares the given image to fit the screen. If the validation is skipped, a failed preparation falls back to the original uri.
+     */
+    private CompletableFuture<String> prepareImage(final ImagePipeline imagePipeline, final String uri, final UriValidator.Mode mode) {
+        return imagePipeline.prepare(uri, screenWidth, screenHeight, mode == UriValidator.Mode.FRESH).handle((preparedUri, ex) -> {
+            if (ex == null) {
+                return CompletableFuture.completedFuture(preparedUri);
+            }
+            if (mode == UriValidator.Mode.SKIP) {
+                return CompletableFuture.completedFuture(uri);
+            }
+            return HTMLLoader.<String>failedFuture(ex instanceof CompletionException ? ex.getCause() : ex);
+        }).thenCompose(preparation -> preparation);
+    }
+
+    private static <V> CompletableFuture<V> failedFuture(final Throwable cause) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * Provides the rendering of the given template out of the render cache or renders and caches it.
+     */
+    private RenderedTemplate render(final String templateName, final String contextName, final Map<String, String> variables, final boolean failOnMissingVariables) throws CouldNotPerformException {
+        final RenderCache.Key key = RenderCache.key(templateName, variables, failOnMissingVariables);
+        RenderedTemplate renderedTemplate = renderCache.get(key);
+        if (renderedTemplate != null) {
+            return renderedTemplate;
+        }
+
+        final VariableContext globalVariableContext = this.globalVariableContext;
+        final CompiledTemplate compiledTemplate = templateRegistry.get(templateName);
         try {
-            new URL(uri).openStream().close();
-        } catch (Exception ex) {
-            throw new VerificationFailedException("URI["+uri+"] is not valid!", ex);
+            renderedTemplate = compiledTemplate.render(globalVariableContext.layer(contextName, variables), failOnMissingVariables);
+        } catch (CouldNotPerformException ex) {
+            throw new CouldNotPerformException("Could not build context out of Template[" + templateName + "]!", ex);
+        }
+
+        // skip caching if the globals or the template have been replaced in the meantime.
+        // the check is done under the cache lock, because a template is always replaced before the cache is invalidated.
+        synchronized (renderCache) {
+            if (globalVariableContext == this.globalVariableContext && templateRegistry.isCurrent(templateName, compiledTemplate)) {
+                renderCache.put(key, renderedTemplate);
+            }
         }
+        return renderedTemplate;
     }
 }
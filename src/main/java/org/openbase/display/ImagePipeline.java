@@ -0,0 +1,340 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.VerificationFailedException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.openbase.display.DisplayView.logger;
+
+/**
+ * Prepares images for display, so the web engine never has to download and decode full resolution images.
+ * <p>
+ * Images are fetched in parallel on worker threads, decoded with source subsampling and downscaled to fit into the requested bounds.
+ * The prepared copies are stored in a cache directory and referenced by their local file uri.
+ * Prepared uris are cached in memory and the files on disk, both in least recently used order, and concurrent requests of the same image share their preparation.
+ * Images which already fit, as well as formats which can not be re-encoded without loss like animated gifs, are stored as fetched.
+ * Images which can not be decoded at all are passed through by their original uri.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class ImagePipeline {
+
+    public static final int DEFAULT_MEMORY_CACHE_SIZE = 256;
+
+    private static final int CONNECT_TIMEOUT = 3000;
+    private static final int READ_TIMEOUT = 10000;
+    private static final float JPEG_QUALITY = 0.9f;
+
+    private final File cacheDirectory;
+    private final long maxDiskSize;
+    private final int memoryCacheSize;
+    private final LinkedHashMap<String, File> preparedImageMap;
+    private final Map<String, CompletableFuture<String>> preparationMap;
+    private long diskSize;
+
+    /**
+     * @param cacheDirectory the directory to store the prepared images in.
+     * @param maxDiskSize    the maximal size of all prepared images in bytes.
+     */
+    public ImagePipeline(final File cacheDirectory, final long maxDiskSize) {
+        this(cacheDirectory, maxDiskSize, DEFAULT_MEMORY_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheDirectory  the directory to store the prepared images in.
+     * @param maxDiskSize     the maximal size of all prepared images in bytes.
+     * @param memoryCacheSize the maximal amount of prepared image uris kept in memory.
+     */
+    public ImagePipeline(final File cacheDirectory, final long maxDiskSize, final int memoryCacheSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxDiskSize = maxDiskSize;
+        this.memoryCacheSize = memoryCacheSize;
+        this.preparedImageMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.preparationMap = new ConcurrentHashMap<>();
+        this.diskSize = cacheDirectory.isDirectory() ? FileUtils.sizeOfDirectory(cacheDirectory) : 0;
+    }
+
+    /**
+     * Prepares the given image to fit into the given bounds.
+     *
+     * @param uri       the uri of the image.
+     * @param maxWidth  the maximal width of the prepared image.
+     * @param maxHeight the maximal height of the prepared image.
+     * @param refresh   if true, the image is fetched again even if it is already prepared.
+     *
+     * @return a future providing the local uri of the prepared image, or the original uri if the image can not be decoded.
+     * The future fails with a {@link VerificationFailedException} if the image could not be fetched.
+     */
+    public CompletableFuture<String> prepare(final String uri, final int maxWidth, final int maxHeight, final boolean refresh) {
+        final String key = ContentKey.of(uri + "@" + maxWidth + "x" + maxHeight).toHexString();
+
+        if (!refresh) {
+            final File preparedImage = lookup(key);
+            if (preparedImage != null) {
+                return CompletableFuture.completedFuture(preparedImage.toURI().toString());
+            }
+        }
+
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final CompletableFuture<String> runningPreparation = preparationMap.putIfAbsent(key, future);
+        if (runningPreparation != null) {
+            return runningPreparation.copy();
+        }
+
+        GlobalCachedExecutorService.execute(() -> {
+            try {
+                future.complete(prepare(key, uri, maxWidth, maxHeight));
+            } catch (VerificationFailedException ex) {
+                future.completeExceptionally(ex);
+            } catch (RuntimeException ex) {
+                future.completeExceptionally(new CouldNotPerformException("Could not prepare Image[" + uri + "]!", ex));
+            } finally {
+                preparationMap.remove(key, future);
+            }
+        });
+        return future.copy();
+    }
+
+    private String prepare(final String key, final String uri, final int maxWidth, final int maxHeight) throws VerificationFailedException {
+        final long timestamp = System.currentTimeMillis();
+        final byte[] data = fetch(uri);
+        try {
+            final File preparedImage = encode(key, data, maxWidth, maxHeight);
+            if (preparedImage == null) {
+                logger.debug("Image[" + uri + "] can not be decoded and is passed through.");
+                return uri;
+            }
+            register(key, preparedImage);
+            logger.debug("Image[" + uri + "] prepared in " + (System.currentTimeMillis() - timestamp) + "ms.");
+            return preparedImage.toURI().toString();
+        } catch (IOException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not prepare Image[" + uri + "]! Original is used instead.", ex), logger);
+            return uri;
+        }
+    }
+
+    private static byte[] fetch(final String uri) throws VerificationFailedException {
+        try {
+            final URLConnection connection = new URL(uri).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            try (InputStream inputStream = connection.getInputStream()) {
+                return IOUtils.toByteArray(inputStream);
+            }
+        } catch (IOException | RuntimeException ex) {
+            throw new VerificationFailedException("URI[" + uri + "] is not valid!", ex);
+        }
+    }
+
+    /**
+     * Decodes the given image data and stores a copy which fits into the given bounds.
+     *
+     * @return the stored file or null if the data can not be decoded.
+     */
+    private File encode(final String key, final byte[] data, final int maxWidth, final int maxHeight) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, false, true);
+                final String format = reader.getFormatName().toLowerCase();
+                final int width = reader.getWidth(0);
+                final int height = reader.getHeight(0);
+
+                // keep images which already fit and formats which could be animated as they are.
+                if ((width <= maxWidth && height <= maxHeight) || format.equals("gif")) {
+                    return store(key, format, data);
+                }
+
+                // decode only every n-th pixel if the image is much larger than needed.
+                final double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+                final int subsampling = Math.max(1, (int) Math.floor(1 / scale / 2));
+                final ImageReadParam readParam = reader.getDefaultReadParam();
+                readParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                final BufferedImage image = reader.read(0, readParam);
+
+                final BufferedImage scaledImage = scale(image, Math.max(1, (int) Math.round(width * scale)), Math.max(1, (int) Math.round(height * scale)));
+                return store(key, scaledImage);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the given image down in steps of at most one half, which avoids the aliasing of a single bilinear step.
+     */
+    private static BufferedImage scale(BufferedImage image, final int width, final int height) {
+        final int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            final BufferedImage scaledImage = new BufferedImage(currentWidth, currentHeight, type);
+            final Graphics2D graphics = scaledImage.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(image, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            image = scaledImage;
+        } while (currentWidth != width || currentHeight != height);
+        return image;
+    }
+
+    private File store(final String key, final String format, final byte[] data) throws IOException {
+        final File file = new File(cacheDirectory, key + "." + format);
+        final File tmpFile = new File(cacheDirectory, key + ".tmp");
+        FileUtils.writeByteArrayToFile(tmpFile, data);
+        return commit(tmpFile, file);
+    }
+
+    private File store(final String key, final BufferedImage image) throws IOException {
+        final boolean alpha = image.getColorModel().hasAlpha();
+        final File file = new File(cacheDirectory, key + (alpha ? ".png" : ".jpg"));
+        final File tmpFile = new File(cacheDirectory, key + ".tmp");
+        FileUtils.forceMkdir(cacheDirectory);
+
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName(alpha ? "png" : "jpeg").next();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(tmpFile)) {
+            writer.setOutput(imageOutputStream);
+            final ImageWriteParam writeParam = writer.getDefaultWriteParam();
+            if (!alpha) {
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                writeParam.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+        } finally {
+            writer.dispose();
+        }
+        return commit(tmpFile, file);
+    }
+
+    private static File commit(final File tmpFile, final File file) throws IOException {
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * @return the prepared image of the given key out of the memory or disk cache, or null if the image is not prepared.
+     */
+    private synchronized File lookup(final String key) {
+        File preparedImage = preparedImageMap.get(key);
+        if (preparedImage == null) {
+            final File[] files = cacheDirectory.listFiles((directory, name) -> name.startsWith(key + ".") && !name.endsWith(".tmp"));
+            if (files == null || files.length == 0) {
+                return null;
+            }
+            preparedImage = files[0];
+            remember(key, preparedImage);
+        }
+
+        // the file could be removed by a cache trim of the user data directory.
+        if (!preparedImage.isFile()) {
+            preparedImageMap.remove(key);
+            return null;
+        }
+        preparedImage.setLastModified(System.currentTimeMillis());
+        return preparedImage;
+    }
+
+    private synchronized void register(final String key, final File preparedImage) {
+        remember(key, preparedImage);
+        diskSize += preparedImage.length();
+        if (diskSize > maxDiskSize) {
+            trim();
+        }
+    }
+
+    private void remember(final String key, final File preparedImage) {
+        preparedImageMap.put(key, preparedImage);
+        if (preparedImageMap.size() > memoryCacheSize) {
+            final Iterator<String> keyIterator = preparedImageMap.keySet().iterator();
+            keyIterator.next();
+            keyIterator.remove();
+        }
+    }
+
+    /**
+     * Removes the least recently used images until the cache fits into its limit.
+     */
+    private void trim() {
+        final File[] files = cacheDirectory.listFiles((directory, name) -> !name.endsWith(".tmp"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        diskSize = 0;
+        for (final File file : files) {
+            diskSize += file.length();
+        }
+        for (final File file : files) {
+            if (diskSize <= maxDiskSize) {
+                break;
+            }
+            final long fileSize = file.length();
+            if (file.delete()) {
+                diskSize -= fileSize;
+                preparedImageMap.values().remove(file);
+            }
+        }
+        logger.debug("Image cache trimmed to " + (diskSize / 1024 / 1024) + "MB.");
+    }
+}
@@ -0,0 +1,189 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import org.openbase.jul.exception.CouldNotPerformException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Displays plain text and images by native nodes instead of a web view.
+ * <p>
+ * Compared to rendering the text and image templates within a {@link WebTab}, this tab neither needs its own web engine
+ * nor a layout pass of a whole document, so it costs a few nodes instead of a web view and displays its content within the next frame.
+ * Images are decoded in background and already downscaled to the screen size while decoding, so only the displayed pixels are kept in memory.
+ * The previous content stays visible until a new image is decoded.
+ * <p>
+ * Needs to be used from the fx application thread.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class NativeTab implements DisplayTab {
+
+    /**
+     * Font size used by the html text view, which is 300% of the default font size.
+     */
+    private static final double TEXT_SIZE = 48;
+
+    private static final ContentKey TEXT_CONTENT_KEY = ContentKey.of("native:text");
+    private static final ContentKey IMAGE_CONTENT_KEY = ContentKey.of("native:image");
+
+    private final StackPane pane;
+    private final Text text;
+    private final ImageView imageView;
+    private final DisplaySwitcher displaySwitcher;
+    private final Rectangle2D screenBounds;
+    private CompletableFuture<Void> loadFuture = CompletableFuture.completedFuture(null);
+    private ContentKey contentKey;
+    private Image pendingImage;
+    private CompletableFuture<Void> pendingImageFuture;
+
+    /**
+     * @param displaySwitcher the switcher used to bring this tab to the front.
+     * @param screenBounds    the bounds of the screen, images are scaled to fit into.
+     */
+    public NativeTab(final DisplaySwitcher displaySwitcher, final Rectangle2D screenBounds) {
+        this.displaySwitcher = displaySwitcher;
+        this.screenBounds = screenBounds;
+        this.text = new Text();
+        this.text.setFont(Font.font("Helvetica", TEXT_SIZE));
+        this.text.setTextAlignment(TextAlignment.CENTER);
+        this.imageView = new ImageView();
+        this.imageView.setPreserveRatio(true);
+        this.imageView.setSmooth(true);
+        this.pane = new StackPane(text, imageView);
+        this.text.wrappingWidthProperty().bind(pane.widthProperty());
+    }
+
+    @Override
+    public Node getNode() {
+        return pane;
+    }
+
+    @Override
+    public CompletableFuture<Void> getLoadFuture() {
+        return loadFuture;
+    }
+
+    @Override
+    public ContentKey getContentKey() {
+        return contentKey;
+    }
+
+    /**
+     * Displays the given text centered on a white background.
+     *
+     * @param content the text to display.
+     * @param color   the text color.
+     *
+     * @return a future which is completed as soon as the text is displayed.
+     */
+    public CompletableFuture<Void> displayText(final String content, final Color color) {
+        cancelPendingImage();
+        text.setText(content);
+        text.setFill(color);
+        text.setVisible(true);
+        imageView.setVisible(false);
+        imageView.setImage(null);
+        pane.setBackground(new Background(new BackgroundFill(Color.WHITE, null, null)));
+        contentKey = TEXT_CONTENT_KEY;
+        loadFuture = CompletableFuture.completedFuture(null);
+        return displaySwitcher.switchTo(this);
+    }
+
+    /**
+     * Decodes the given image in background and displays it scaled to the screen on a black background.
+     *
+     * @param uri the uri of the image.
+     *
+     * @return a future which is completed as soon as the image is displayed, or failed if the image could not be loaded.
+     */
+    public CompletableFuture<Void> displayImage(final String uri) {
+        cancelPendingImage();
+        final CompletableFuture<Void> imageFuture = new CompletableFuture<>();
+        final Image image;
+        try {
+            image = new Image(uri, screenBounds.getWidth(), screenBounds.getHeight(), true, true, true);
+        } catch (IllegalArgumentException ex) {
+            imageFuture.completeExceptionally(new CouldNotPerformException("Could not load Image[" + uri + "]!", ex));
+            return imageFuture;
+        }
+        pendingImage = image;
+        pendingImageFuture = imageFuture;
+        loadFuture = imageFuture;
+
+        image.progressProperty().addListener((observable, oldProgress, progress) -> {
+            if (progress.doubleValue() >= 1 && !image.isError()) {
+                imageFuture.complete(null);
+            }
+        });
+        image.errorProperty().addListener((observable, wasError, error) -> {
+            if (error) {
+                imageFuture.completeExceptionally(new CouldNotPerformException("Could not load Image[" + uri + "]!", image.getException()));
+            }
+        });
+
+        // the image might be loaded already, e.g. if it is cached or the uri is invalid.
+        if (image.isError()) {
+            imageFuture.completeExceptionally(new CouldNotPerformException("Could not load Image[" + uri + "]!", image.getException()));
+        } else if (image.getProgress() >= 1) {
+            imageFuture.complete(null);
+        }
+
+        // unlike failed web content, a failed image is not displayed, so the previous content stays visible.
+        return imageFuture.thenCompose(loaded -> {
+            if (pendingImage != image) {
+                throw new CancellationException("Image[" + uri + "] superseded by a later request.");
+            }
+            pendingImage = null;
+            pendingImageFuture = null;
+            imageView.setImage(image);
+            imageView.setVisible(true);
+            text.setVisible(false);
+            pane.setBackground(new Background(new BackgroundFill(Color.BLACK, null, null)));
+            contentKey = IMAGE_CONTENT_KEY;
+            return displaySwitcher.switchTo(this);
+        });
+    }
+
+    private void cancelPendingImage() {
+        if (pendingImage != null) {
+            pendingImage.cancel();
+            pendingImageFuture.cancel(false);
+            pendingImage = null;
+            pendingImageFuture = null;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bounded least recently used cache of rendered templates.
+ * <p>
+ * Renderings are keyed by the template identity together with the request specific variables in normalized order,
+ * so a repeated request can skip the template rendering and directly look up its tab.
+ * The cache needs to be cleared whenever the templates or the global variables they are rendered with change.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class RenderCache {
+
+    private final int capacity;
+    private final LinkedHashMap<Key, RenderedTemplate> renderingMap;
+    private long hits, misses, evictions;
+
+    /**
+     * @param capacity the maximal amount of cached renderings, a value less or equal zero disables the cache.
+     */
+    public RenderCache(final int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.renderingMap = new LinkedHashMap<Key, RenderedTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, RenderedTemplate> eldest) {
+                if (size() > RenderCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Creates the cache key of a rendering.
+     *
+     * @param templateId             the identity of the template.
+     * @param variables              the request specific variables.
+     * @param failOnMissingVariables the render mode, because it affects the result.
+     *
+     * @return the key.
+     */
+    public static Key key(final String templateId, final Map<String, String> variables, final boolean failOnMissingVariables) {
+        return new Key(templateId, variables, failOnMissingVariables);
+    }
+
+    /**
+     * @param key the rendering key.
+     *
+     * @return the cached rendering or null if the rendering is not cached.
+     */
+    public synchronized RenderedTemplate get(final Key key) {
+        final RenderedTemplate renderedTemplate = renderingMap.get(key);
+        if (renderedTemplate == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return renderedTemplate;
+    }
+
+    /**
+     * Caches the given rendering and evicts the least recently used one if the cache is full.
+     *
+     * @param key              the rendering key.
+     * @param renderedTemplate the rendering.
+     */
+    public synchronized void put(final Key key, final RenderedTemplate renderedTemplate) {
+        if (capacity == 0) {
+            return;
+        }
+        renderingMap.put(key, renderedTemplate);
+    }
+
+    /**
+     * Removes all cached renderings.
+     */
+    public synchronized void clear() {
+        evictions += renderingMap.size();
+        renderingMap.clear();
+    }
+
+    /**
+     * Removes all cached renderings of the given template.
+     *
+     * @param templateId the identity of the template.
+     */
+    public synchronized void invalidate(final String templateId) {
+        final int size = renderingMap.size();
+        renderingMap.keySet().removeIf(key -> key.templateId.equals(templateId));
+        evictions += size - renderingMap.size();
+    }
+
+    /**
+     * @return a snapshot of the current cache statistics.
+     */
+    public synchronized Stats stats() {
+        return new Stats(renderingMap.size(), capacity, hits, misses, evictions);
+    }
+
+    /**
+     * Identifies a rendering by its template and normalized request variables.
+     */
+    public static final class Key {
+
+        private final String templateId;
+        private final Map<String, String> variables;
+        private final boolean failOnMissingVariables;
+        private final int hashCode;
+
+        private Key(final String templateId, final Map<String, String> variables, final boolean failOnMissingVariables) {
+            this.templateId = templateId;
+            this.variables = Collections.unmodifiableMap(new TreeMap<>(variables));
+            this.failOnMissingVariables = failOnMissingVariables;
+            this.hashCode = (templateId.hashCode() * 31 + this.variables.hashCode()) * 31 + Boolean.hashCode(failOnMissingVariables);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && failOnMissingVariables == other.failOnMissingVariables
+                    && templateId.equals(other.templateId)
+                    && variables.equals(other.variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "[" + templateId + ", " + variables.keySet() + "]";
+        }
+    }
+
+    /**
+     * An immutable snapshot of the cache usage.
+     */
+    public static class Stats {
+
+        private final int size, capacity;
+        private final long hits, misses, evictions;
+
+        public Stats(final int size, final int capacity, final long hits, final long misses, final long evictions) {
+            this.size = size;
+            this.capacity = capacity;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return RenderCache.class.getSimpleName() + "[size:" + size + "/" + capacity + ", hits:" + hits + ", misses:" + misses + ", evictions:" + evictions + "]";
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The html of a template rendered with a specific set of variables.
+ * <p>
+ * Variables placed in the text of the document are bound, which means they are wrapped by a placeholder element carrying a
+ * {@code data-var} attribute, so their values can be replaced later on within the live dom.
+ * Variables placed within tags, attributes, comments or raw text elements like style, script and title can not be bound
+ * and any change of their values requires to reload the whole document.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class RenderedTemplate {
+
+    /**
+     * The attribute which marks the placeholder element of a bound variable.
+     */
+    public static final String BINDING_ATTRIBUTE = "data-var";
+
+    private final String templateId;
+    private final String html;
+    private final Map<String, String> boundVariables;
+    private final Map<String, String> unboundVariables;
+    private volatile ContentKey templateKey;
+    private volatile ContentKey renderingKey;
+    private volatile ContentKey contentKey;
+
+    public RenderedTemplate(final String templateId, final String html, final Map<String, String> boundVariables, final Map<String, String> unboundVariables) {
+        this.templateId = templateId;
+        this.html = html;
+        this.boundVariables = Collections.unmodifiableMap(boundVariables);
+        this.unboundVariables = Collections.unmodifiableMap(unboundVariables);
+    }
+
+    /**
+     * @return the identity of the rendered template.
+     */
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * @return the key of the tab which displays this template, independent of the variables it is rendered with.
+     */
+    public ContentKey getTemplateKey() {
+        if (templateKey == null) {
+            templateKey = templateKey(templateId);
+        }
+        return templateKey;
+    }
+
+    /**
+     * @param templateId the identity of a template.
+     *
+     * @return the key of the tab which displays the given template.
+     */
+    public static ContentKey templateKey(final String templateId) {
+        return ContentKey.of("template:" + templateId);
+    }
+
+    /**
+     * In contrast to {@link #getContentKey()} the key stays the same if the template itself changes, so a tab assigned to this key can be rerendered in place.
+     *
+     * @return the key of a tab dedicated to this rendering, which identifies the template together with its variables.
+     */
+    public ContentKey getRenderingKey() {
+        if (renderingKey == null) {
+            final StringBuilder renderingId = new StringBuilder("rendering:").append(templateId.length()).append(':').append(templateId);
+            for (final Map<String, String> variables : Arrays.asList(boundVariables, unboundVariables)) {
+                renderingId.append('|');
+                for (final Map.Entry<String, String> variable : new TreeMap<>(variables).entrySet()) {
+                    // length prefixes keep the id unambiguous for any variable content.
+                    renderingId.append(variable.getKey().length()).append(':').append(variable.getKey())
+                            .append(variable.getValue().length()).append(':').append(variable.getValue());
+                }
+            }
+            renderingKey = ContentKey.of(renderingId.toString());
+        }
+        return renderingKey;
+    }
+
+    /**
+     * @return the key of this rendering, which identifies the template together with its variables.
+     */
+    public ContentKey getContentKey() {
+        if (contentKey == null) {
+            contentKey = ContentKey.of(html);
+        }
+        return contentKey;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    public Map<String, String> getBoundVariables() {
+        return boundVariables;
+    }
+
+    public Map<String, String> getUnboundVariables() {
+        return unboundVariables;
+    }
+
+    /**
+     * Computes the bound variables which need to be updated to turn the given rendering into this one.
+     *
+     * @param previous the rendering currently shown by a tab, might be null.
+     *
+     * @return the changed bound variables, or null if the tab needs to be reloaded because the template or an unbound variable differs.
+     */
+    public Map<String, String> diff(final RenderedTemplate previous) {
+        if (previous == null
+                || !templateId.equals(previous.templateId)
+                || !unboundVariables.equals(previous.unboundVariables)
+                || !boundVariables.keySet().equals(previous.boundVariables.keySet())) {
+            return null;
+        }
+
+        final Map<String, String> changedVariables = new HashMap<>();
+        for (final Map.Entry<String, String> variable : boundVariables.entrySet()) {
+            if (!variable.getValue().equals(previous.boundVariables.get(variable.getKey()))) {
+                changedVariables.put(variable.getKey(), variable.getValue());
+            }
+        }
+        return changedVariables;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + templateId + "]";
+    }
+}
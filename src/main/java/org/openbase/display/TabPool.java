@@ -0,0 +1,673 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded pool of tabs addressed by their content key.
+ * <p>
+ * Each tab belongs to a priority tier. Within a tier the pool keeps its tabs in access order,
+ * so lookup, promotion and the eviction of the least recently used tab are constant time operations.
+ * If the pool is full, the least recently used tab of the lowest populated tier is not disposed but recycled for the new content key.
+ * Each tier can additionally be limited by a quota. Pinned tabs are never considered for eviction.
+ * Tabs passing the retain test of the pool, e.g. the currently displayed tab, are skipped as well.
+ * If no tab can be recycled because all of them are pinned or retained, a new tab is assigned and the pool temporarily exceeds its capacity
+ * until {@link #shrink(Object)} removes the surplus, which also enforces the quotas after a tab changed its tier.
+ * <p>
+ * Unassigned tabs, e.g. pre-warmed ones created during startup, can be offered as idle tabs.
+ * As long as the pool is not full, idle tabs are handed out before new tabs are created.
+ * <p>
+ * Optionally each tab can be weighed by its estimated memory cost.
+ * Whenever a weight is updated and the weighted size of the pool exceeds the configured budget,
+ * the least recently used tabs are removed until the pool fits into its budget again.
+ * <p>
+ * Tabs which are not used for a while can be removed via {@link #expire(long, int, Predicate)} to release their resources.
+ *
+ * @param <K> the content key type.
+ * @param <T> the tab type.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class TabPool<K, T> {
+
+    /**
+     * The priority tiers of the pool ordered from the first to the last tier considered for eviction.
+     */
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    private final int capacity;
+    private final long maxWeight;
+    private final HashMap<K, Entry<K, T>> entryMap;
+    private final EnumMap<Priority, LinkedHashMap<K, Entry<K, T>>> evictableEntryMap;
+    private final EnumMap<Priority, Integer> quotaMap;
+    private final int[] tierSizes;
+    private final ArrayDeque<T> idleTabs;
+    private final Function<K, T> tabFactory;
+    private final BiConsumer<T, K> tabRecycler;
+    private final ToLongFunction<T> tabWeigher;
+    private final Predicate<T> retainTest;
+
+    private int pinned;
+    private long hits, misses, evictions, weight;
+
+    /**
+     * Creates a new tab pool.
+     *
+     * @param capacity    the maximal amount of tabs hold by this pool.
+     * @param tabFactory  used to create a new tab for the given key as long as the pool is not full.
+     * @param tabRecycler used to assign a recycled tab to the given key once the pool is full.
+     */
+    public TabPool(final int capacity, final Function<K, T> tabFactory, final BiConsumer<T, K> tabRecycler) {
+        this(capacity, 0, tab -> 0, tabFactory, tabRecycler);
+    }
+
+    /**
+     * Creates a new tab pool which additionally limits the overall weight of its tabs.
+     *
+     * @param capacity    the maximal amount of tabs hold by this pool.
+     * @param maxWeight   the maximal weighted size of this pool. A value less or equal zero disables the weight limit.
+     * @param tabWeigher  used to estimate the weight of a tab whenever {@link #updateWeight(Object)} is called.
+     * @param tabFactory  used to create a new tab for the given key as long as the pool is not full.
+     * @param tabRecycler used to assign a recycled tab to the given key once the pool is full.
+     */
+    public TabPool(final int capacity, final long maxWeight, final ToLongFunction<T> tabWeigher, final Function<K, T> tabFactory, final BiConsumer<T, K> tabRecycler) {
+        this(capacity, maxWeight, tabWeigher, tabFactory, tabRecycler, tab -> false);
+    }
+
+    /**
+     * Creates a new tab pool which additionally limits the overall weight of its tabs and never recycles tabs passing the given retain test.
+     *
+     * @param capacity    the maximal amount of tabs hold by this pool.
+     * @param maxWeight   the maximal weighted size of this pool. A value less or equal zero disables the weight limit.
+     * @param tabWeigher  used to estimate the weight of a tab whenever {@link #updateWeight(Object)} is called.
+     * @param tabFactory  used to create a new tab for the given key as long as the pool is not full.
+     * @param tabRecycler used to assign a recycled tab to the given key once the pool is full.
+     * @param retainTest  tabs passing this test are never recycled, e.g. because they are currently displayed.
+     */
+    public TabPool(final int capacity, final long maxWeight, final ToLongFunction<T> tabWeigher, final Function<K, T> tabFactory, final BiConsumer<T, K> tabRecycler, final Predicate<T> retainTest) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Tab pool capacity[" + capacity + "] should be at least one!");
+        }
+        this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.tabWeigher = tabWeigher;
+        this.tabFactory = tabFactory;
+        this.tabRecycler = tabRecycler;
+        this.retainTest = retainTest;
+        this.entryMap = new HashMap<>(capacity * 2);
+        this.evictableEntryMap = new EnumMap<>(Priority.class);
+        this.quotaMap = new EnumMap<>(Priority.class);
+        for (final Priority priority : Priority.values()) {
+            evictableEntryMap.put(priority, new LinkedHashMap<>(capacity * 2, 0.75f, true));
+            quotaMap.put(priority, capacity);
+        }
+        this.tierSizes = new int[Priority.values().length];
+        this.idleTabs = new ArrayDeque<>();
+    }
+
+    /**
+     * Limits the amount of tabs of the given priority tier.
+     * If the quota is reached, new content of this tier recycles the least recently used tab of the same tier.
+     * Tabs which move into the tier by a priority change may exceed the quota until {@link #shrink(Object)} is called.
+     *
+     * @param priority the tier to limit.
+     * @param quota    the maximal amount of tabs of the tier.
+     */
+    public synchronized void setQuota(final Priority priority, final int quota) {
+        quotaMap.put(priority, quota);
+    }
+
+    /**
+     * Returns the tab assigned to the given key and marks it as most recently used.
+     * If no tab is assigned yet, a new tab is created or the least recently used one is recycled.
+     * Newly assigned tabs are part of the {@link Priority#NORMAL} tier, already assigned tabs keep their priority.
+     *
+     * @param key the content key.
+     *
+     * @return the tab assigned to the key.
+     */
+    public synchronized T acquire(final K key) {
+        return acquire(key, null);
+    }
+
+    /**
+     * Returns the tab assigned to the given key and marks it as most recently used.
+     * If no tab is assigned yet, a new tab is created or the least recently used one is recycled.
+     *
+     * @param key      the content key.
+     * @param priority the tier the tab should belong to or null to keep the priority of an already assigned tab.
+     *
+     * @return the tab assigned to the key.
+     */
+    public synchronized T acquire(final K key, final Priority priority) {
+        Entry<K, T> entry = entryMap.get(key);
+        if (entry != null) {
+            hits++;
+            entry.hits++;
+            entry.lastAccess = System.currentTimeMillis();
+            if (priority != null && priority != entry.priority) {
+                removeEntry(entry);
+                entry.priority = priority;
+                addEntry(entry);
+            } else {
+                promote(entry);
+            }
+            return entry.tab;
+        }
+        misses++;
+
+        final Priority tier = priority != null ? priority : Priority.NORMAL;
+
+        // recover outdated tab of the same tier if its quota is reached
+        Entry<K, T> outdatedEntry = null;
+        if (tierSizes[tier.ordinal()] >= quotaMap.get(tier)) {
+            outdatedEntry = eldestRecyclable(evictableEntryMap.get(tier));
+        }
+
+        // recover outdated tab of the lowest tier if the pool is full
+        if (outdatedEntry == null && entryMap.size() >= capacity) {
+            for (final Priority evictionTier : Priority.values()) {
+                outdatedEntry = eldestRecyclable(evictableEntryMap.get(evictionTier));
+                if (outdatedEntry != null) {
+                    break;
+                }
+            }
+        }
+
+        final T tab;
+        if (outdatedEntry != null) {
+            removeEntry(outdatedEntry);
+            evictions++;
+            tab = outdatedEntry.tab;
+            tabRecycler.accept(tab, key);
+        } else if (!idleTabs.isEmpty()) {
+            // use pre-warmed tab
+            tab = idleTabs.poll();
+            tabRecycler.accept(tab, key);
+        } else {
+            tab = tabFactory.apply(key);
+        }
+        entry = new Entry<>(key, tab, tier);
+        addEntry(entry);
+        return entry.tab;
+    }
+
+    /**
+     * Removes the least recently used tabs which exceed the quota of their tier or the capacity of the pool, starting with the lowest tier.
+     * Such a surplus remains if all tabs were pinned or retained while a new tab was assigned, or if an assigned tab changed its tier.
+     * The tab assigned to the given key, pinned tabs and tabs passing the retain test of the pool are never removed by this call.
+     *
+     * @param key the content key of the tab to keep, e.g. the one just acquired, or null.
+     *
+     * @return the removed tabs. The caller is responsible to dispose them.
+     */
+    public synchronized List<T> shrink(final K key) {
+        final List<T> removedTabs = new ArrayList<>();
+        for (final Priority priority : Priority.values()) {
+            Entry<K, T> surplusEntry;
+            while ((tierSizes[priority.ordinal()] > quotaMap.get(priority) || entryMap.size() > capacity)
+                    && (surplusEntry = eldestRecyclable(evictableEntryMap.get(priority), key)) != null) {
+                removeEntry(surplusEntry);
+                evictions++;
+                removedTabs.add(surplusEntry.tab);
+            }
+        }
+        return removedTabs;
+    }
+
+    /**
+     * Marks the tab assigned to the given key as most recently used.
+     *
+     * @param key the content key.
+     *
+     * @return true if a tab is assigned to the key, otherwise false.
+     */
+    public synchronized boolean touch(final K key) {
+        final Entry<K, T> entry = entryMap.get(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.hits++;
+        entry.lastAccess = System.currentTimeMillis();
+        promote(entry);
+        return true;
+    }
+
+    /**
+     * Looks up the tab assigned to the given key without counting it as access.
+     *
+     * @param key the content key.
+     *
+     * @return the assigned tab or null if no tab is assigned to the key.
+     */
+    public synchronized T get(final K key) {
+        final Entry<K, T> entry = entryMap.get(key);
+        return entry == null ? null : entry.tab;
+    }
+
+    /**
+     * Pins the tab assigned to the given key, so it is never evicted or recycled until it is unpinned.
+     * At least one tab of the pool always stays unpinned.
+     *
+     * @param key the content key.
+     *
+     * @return true if the tab is pinned, false if no tab is assigned to the key or no further tab can be pinned.
+     */
+    public synchronized boolean pin(final K key) {
+        final Entry<K, T> entry = entryMap.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.pinned) {
+            return true;
+        }
+        if (pinned >= capacity - 1) {
+            return false;
+        }
+        evictableEntryMap.get(entry.priority).remove(key);
+        entry.pinned = true;
+        pinned++;
+        return true;
+    }
+
+    /**
+     * Releases the pin of the tab assigned to the given key, so it is considered for eviction again.
+     *
+     * @param key the content key.
+     *
+     * @return true if a tab is assigned to the key, otherwise false.
+     */
+    public synchronized boolean unpin(final K key) {
+        final Entry<K, T> entry = entryMap.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.pinned) {
+            // the entry is added as most recently used, so its access time has to match its position for expire.
+            entry.pinned = false;
+            entry.lastAccess = System.currentTimeMillis();
+            pinned--;
+            evictableEntryMap.get(entry.priority).put(key, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Offers an unassigned tab which is handed out by the next {@link #acquire(Object)} call of a not yet assigned key.
+     *
+     * @param tab the unassigned tab.
+     *
+     * @return true if the tab was added, false if the pool has no space left for further tabs.
+     */
+    public synchronized boolean offerIdle(final T tab) {
+        if (entryMap.size() + idleTabs.size() >= capacity) {
+            return false;
+        }
+        return idleTabs.offer(tab);
+    }
+
+    /**
+     * @return a snapshot of all idle tabs.
+     */
+    public synchronized List<T> getIdleTabs() {
+        return new ArrayList<>(idleTabs);
+    }
+
+    /**
+     * Re-estimates the weight of the tab assigned to the given key.
+     * If the pool exceeds its weight budget afterwards, the least recently used unpinned tabs are removed, starting with the lowest tier,
+     * until the pool fits into its budget again. The tab assigned to the given key and tabs passing the retain test of the pool are never removed by this call.
+     *
+     * @param key the content key.
+     *
+     * @return the tabs removed to satisfy the weight budget. The caller is responsible to dispose them.
+     */
+    public synchronized List<T> updateWeight(final K key) {
+        final Entry<K, T> entry = entryMap.get(key);
+        if (entry == null) {
+            return new ArrayList<>();
+        }
+        final long newWeight = tabWeigher.applyAsLong(entry.tab);
+        weight += newWeight - entry.weight;
+        entry.weight = newWeight;
+
+        final List<T> removedTabs = new ArrayList<>();
+        if (maxWeight <= 0) {
+            return removedTabs;
+        }
+        for (final Priority priority : Priority.values()) {
+            final Iterator<Entry<K, T>> iterator = evictableEntryMap.get(priority).values().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                final Entry<K, T> outdatedEntry = iterator.next();
+                if (outdatedEntry == entry || retainTest.test(outdatedEntry.tab)) {
+                    continue;
+                }
+                iterator.remove();
+                entryMap.remove(outdatedEntry.key);
+                tierSizes[outdatedEntry.priority.ordinal()]--;
+                weight -= outdatedEntry.weight;
+                evictions++;
+                removedTabs.add(outdatedEntry.tab);
+            }
+        }
+        return removedTabs;
+    }
+
+    /**
+     * Removes unpinned tabs which were not used within the given idle period.
+     *
+     * @param maxIdleTime the idle period in milliseconds.
+     * @param maxAmount   the maximal amount of tabs to remove by this call.
+     * @param retainTest  tabs passing this test are kept even if they are expired, e.g. because they are currently displayed.
+     *
+     * @return the expired tabs ordered from the least recently used one. The caller is responsible to release them.
+     */
+    public synchronized List<T> expire(final long maxIdleTime, final int maxAmount, final Predicate<T> retainTest) {
+        final List<T> expiredTabs = new ArrayList<>();
+        final long expirationTime = System.currentTimeMillis() - maxIdleTime;
+        for (final Priority priority : Priority.values()) {
+            final Iterator<Entry<K, T>> iterator = evictableEntryMap.get(priority).values().iterator();
+            while (expiredTabs.size() < maxAmount && iterator.hasNext()) {
+                final Entry<K, T> entry = iterator.next();
+                if (entry.lastAccess > expirationTime) {
+                    // all further entries of this tier are accessed even later
+                    break;
+                }
+                if (retainTest.test(entry.tab)) {
+                    continue;
+                }
+                iterator.remove();
+                entryMap.remove(entry.key);
+                tierSizes[entry.priority.ordinal()]--;
+                weight -= entry.weight;
+                evictions++;
+                expiredTabs.add(entry.tab);
+            }
+        }
+        return expiredTabs;
+    }
+
+    /**
+     * Removes the tab assigned to the given key from this pool, even if it is pinned.
+     *
+     * @param key the content key.
+     *
+     * @return the removed tab or null if no tab was assigned to the key.
+     */
+    public synchronized T evict(final K key) {
+        final Entry<K, T> entry = entryMap.get(key);
+        if (entry == null) {
+            return null;
+        }
+        removeEntry(entry);
+        evictions++;
+        return entry.tab;
+    }
+
+    /**
+     * Removes all tabs from this pool, including pinned ones.
+     *
+     * @return the removed tabs.
+     */
+    public synchronized List<T> evictAll() {
+        final List<T> tabs = getTabs();
+        evictions += tabs.size();
+        entryMap.clear();
+        evictableEntryMap.values().forEach(LinkedHashMap::clear);
+        for (int i = 0; i < tierSizes.length; i++) {
+            tierSizes[i] = 0;
+        }
+        pinned = 0;
+        weight = 0;
+        return tabs;
+    }
+
+    /**
+     * @return a snapshot of all pooled tabs.
+     */
+    public synchronized List<T> getTabs() {
+        final List<T> tabs = new ArrayList<>(entryMap.size());
+        for (final Entry<K, T> entry : entryMap.values()) {
+            tabs.add(entry.tab);
+        }
+        return tabs;
+    }
+
+    /**
+     * @return a snapshot of the state of all pooled tabs.
+     */
+    public synchronized List<TabState<K>> getTabStates() {
+        final List<TabState<K>> tabStates = new ArrayList<>(entryMap.size());
+        for (final Entry<K, T> entry : entryMap.values()) {
+            tabStates.add(new TabState<>(entry.key, entry.priority, entry.pinned, entry.hits, entry.weight));
+        }
+        return tabStates;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return a snapshot of the current pool statistics.
+     */
+    public synchronized Stats stats() {
+        return new Stats(entryMap.size(), idleTabs.size(), pinned, capacity, hits, misses, evictions, weight, maxWeight);
+    }
+
+    private void promote(final Entry<K, T> entry) {
+        if (!entry.pinned) {
+            // access ordered map moves the entry to its tail
+            evictableEntryMap.get(entry.priority).get(entry.key);
+        }
+    }
+
+    private void addEntry(final Entry<K, T> entry) {
+        entryMap.put(entry.key, entry);
+        tierSizes[entry.priority.ordinal()]++;
+        weight += entry.weight;
+        if (entry.pinned) {
+            pinned++;
+        } else {
+            evictableEntryMap.get(entry.priority).put(entry.key, entry);
+        }
+    }
+
+    private void removeEntry(final Entry<K, T> entry) {
+        entryMap.remove(entry.key);
+        tierSizes[entry.priority.ordinal()]--;
+        weight -= entry.weight;
+        if (entry.pinned) {
+            pinned--;
+        } else {
+            evictableEntryMap.get(entry.priority).remove(entry.key);
+        }
+    }
+
+    private Entry<K, T> eldestRecyclable(final LinkedHashMap<K, Entry<K, T>> entryMap) {
+        return eldestRecyclable(entryMap, null);
+    }
+
+    private Entry<K, T> eldestRecyclable(final LinkedHashMap<K, Entry<K, T>> entryMap, final K excludedKey) {
+        for (final Entry<K, T> entry : entryMap.values()) {
+            if (!entry.key.equals(excludedKey) && !retainTest.test(entry.tab)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static class Entry<K, T> {
+
+        private final K key;
+        private final T tab;
+        private Priority priority;
+        private boolean pinned;
+        private long weight, hits, lastAccess;
+
+        private Entry(final K key, final T tab, final Priority priority) {
+            this.key = key;
+            this.tab = tab;
+            this.priority = priority;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * An immutable snapshot of the state of a single pooled tab.
+     *
+     * @param <K> the content key type.
+     */
+    public static class TabState<K> {
+
+        private final K key;
+        private final Priority priority;
+        private final boolean pinned;
+        private final long hits, weight;
+
+        public TabState(final K key, final Priority priority, final boolean pinned, final long hits, final long weight) {
+            this.key = key;
+            this.priority = priority;
+            this.pinned = pinned;
+            this.hits = hits;
+            this.weight = weight;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public boolean isPinned() {
+            return pinned;
+        }
+
+        /**
+         * @return how often the tab was requested again after it was assigned to its content.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return "[priority:" + priority + ", pinned:" + pinned + ", hits:" + hits + ", weight:" + weight + "]";
+        }
+    }
+
+    /**
+     * An immutable snapshot of the pool usage.
+     */
+    public static class Stats {
+
+        private final int size, idle, pinned, capacity;
+        private final long hits, misses, evictions, weight, maxWeight;
+
+        public Stats(final int size, final int idle, final int pinned, final int capacity, final long hits, final long misses, final long evictions, final long weight, final long maxWeight) {
+            this.size = size;
+            this.idle = idle;
+            this.pinned = pinned;
+            this.capacity = capacity;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.weight = weight;
+            this.maxWeight = maxWeight;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return the amount of unassigned tabs ready to be handed out.
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return the amount of tabs excluded from eviction.
+         */
+        public int getPinned() {
+            return pinned;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the summed up weight of all pooled tabs.
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the weight budget of the pool or a value less or equal zero if the weight is not limited.
+         */
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        @Override
+        public String toString() {
+            return TabPool.class.getSimpleName() + "[size:" + size + "/" + capacity + ", idle:" + idle + ", pinned:" + pinned + ", weight:" + weight + "/" + (maxWeight > 0 ? maxWeight : "unlimited") + ", hits:" + hits + ", misses:" + misses + ", evictions:" + evictions + "]";
+        }
+    }
+}
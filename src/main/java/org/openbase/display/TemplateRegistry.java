@@ -0,0 +1,291 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.display.HTMLLoader.Template;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.InstantiationException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.openbase.display.DisplayView.logger;
+
+/**
+ * Provides all compiled templates by name.
+ * <p>
+ * The registry contains the built-in {@link Template}s and, if configured, all html files of an external template directory
+ * which are addressed by their file name without extension. An external template with the name of a built-in one replaces it.
+ * The directory is watched while the registry is active: changed templates are compiled once and swapped atomically,
+ * so renderings either use the previous or the new version, and all registered change listeners are informed afterwards.
+ * A template which fails to compile keeps its previous version.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class TemplateRegistry {
+
+    public static final String TEMPLATE_FILE_EXTENSION = ".html";
+
+    private final File templateDirectory;
+    private final Map<String, CompiledTemplate> builtinTemplateMap;
+    private final Map<String, CompiledTemplate> templateMap;
+    private final Map<String, String> externalSourceMap;
+    private final List<Consumer<String>> changeListeners;
+    private WatchService watchService;
+
+    /**
+     * @param templateDirectory the directory of external templates, or null if only built-in templates should be provided.
+     *
+     * @throws InstantiationException is thrown if a built-in template could not be compiled.
+     */
+    public TemplateRegistry(final File templateDirectory) throws InstantiationException {
+        try {
+            this.templateDirectory = templateDirectory;
+            this.builtinTemplateMap = new HashMap<>();
+            this.templateMap = new ConcurrentHashMap<>();
+            this.externalSourceMap = new HashMap<>();
+            this.changeListeners = new CopyOnWriteArrayList<>();
+
+            for (final Template template : Template.values()) {
+                builtinTemplateMap.put(template.name(), template.getCompiledTemplate());
+            }
+            templateMap.putAll(builtinTemplateMap);
+            scan();
+        } catch (CouldNotPerformException ex) {
+            throw new InstantiationException(this, ex);
+        }
+    }
+
+    /**
+     * @param name the name of the template.
+     *
+     * @return the current version of the template.
+     *
+     * @throws NotAvailableException is thrown if no template with the given name is registered.
+     */
+    public CompiledTemplate get(final String name) throws NotAvailableException {
+        final CompiledTemplate compiledTemplate = templateMap.get(name);
+        if (compiledTemplate == null) {
+            throw new NotAvailableException("Template[" + name + "]");
+        }
+        return compiledTemplate;
+    }
+
+    /**
+     * @param name             the name of the template.
+     * @param compiledTemplate a version of the template.
+     *
+     * @return true if the given version is still the current one.
+     */
+    public boolean isCurrent(final String name, final CompiledTemplate compiledTemplate) {
+        return templateMap.get(name) == compiledTemplate;
+    }
+
+    /**
+     * @return the names of all registered templates.
+     */
+    public Set<String> getTemplateNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(templateMap.keySet()));
+    }
+
+    /**
+     * Registers a listener which is informed with the template name after a template was replaced or removed.
+     * Listeners are called on the watcher thread.
+     *
+     * @param changeListener the listener to register.
+     */
+    public void addChangeListener(final Consumer<String> changeListener) {
+        changeListeners.add(changeListener);
+    }
+
+    public void removeChangeListener(final Consumer<String> changeListener) {
+        changeListeners.remove(changeListener);
+    }
+
+    /**
+     * Starts watching the template directory. Does nothing if no template directory is configured.
+     *
+     * @throws CouldNotPerformException is thrown if the directory could not be watched.
+     */
+    public synchronized void activate() throws CouldNotPerformException {
+        if (templateDirectory == null || watchService != null) {
+            return;
+        }
+        try {
+            final WatchService watchService = templateDirectory.toPath().getFileSystem().newWatchService();
+            templateDirectory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            this.watchService = watchService;
+            GlobalCachedExecutorService.execute(() -> watch(watchService));
+            logger.info("watch template directory " + templateDirectory);
+        } catch (IOException ex) {
+            throw new CouldNotPerformException("Could not watch template directory " + templateDirectory + "!", ex);
+        }
+
+        // catch up changes since the initial scan.
+        scan();
+    }
+
+    /**
+     * Stops watching the template directory.
+     */
+    public synchronized void shutdown() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not stop watching template directory!", ex), logger);
+        }
+        watchService = null;
+    }
+
+    private void watch(final WatchService watchService) {
+        try {
+            while (true) {
+                final WatchKey watchKey = watchService.take();
+                boolean overflow = false;
+                for (final WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    final Path file = templateDirectory.toPath().resolve((Path) event.context());
+                    if (isTemplateFile(file)) {
+                        update(file);
+                    }
+                }
+                if (overflow) {
+                    scan();
+                }
+                if (!watchKey.reset()) {
+                    logger.warn("Template directory " + templateDirectory + " is not accessible anymore.");
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException ex) {
+            // registry is shutting down.
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Synchronizes all templates with the template directory.
+     */
+    private synchronized void scan() {
+        if (templateDirectory == null) {
+            return;
+        }
+        final File[] files = templateDirectory.listFiles();
+        if (files == null) {
+            logger.warn("Template directory " + templateDirectory + " is not available.");
+            return;
+        }
+
+        final Set<String> names = new TreeSet<>();
+        for (final File file : files) {
+            if (isTemplateFile(file.toPath())) {
+                names.add(nameOf(file.toPath()));
+                update(file.toPath());
+            }
+        }
+        for (final String name : new ArrayList<>(externalSourceMap.keySet())) {
+            if (!names.contains(name)) {
+                update(templateDirectory.toPath().resolve(name + TEMPLATE_FILE_EXTENSION));
+            }
+        }
+    }
+
+    /**
+     * Compiles the given template file and swaps the registered version, or removes the template if the file does not exist anymore.
+     */
+    private synchronized void update(final Path file) {
+        final String name = nameOf(file);
+        try {
+            if (!Files.isRegularFile(file)) {
+                if (externalSourceMap.remove(name) == null) {
+                    return;
+                }
+                final CompiledTemplate builtinTemplate = builtinTemplateMap.get(name);
+                if (builtinTemplate != null) {
+                    templateMap.put(name, builtinTemplate);
+                } else {
+                    templateMap.remove(name);
+                }
+                logger.info("Template[" + name + "] removed.");
+            } else {
+                final String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+                // editors often emit several events per save.
+                if (source.equals(externalSourceMap.get(name))) {
+                    return;
+                }
+                templateMap.put(name, CompiledTemplate.compile(name, source));
+                externalSourceMap.put(name, source);
+                logger.info("Template[" + name + "] loaded from " + file);
+            }
+        } catch (IOException | CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not update Template[" + name + "] out of " + file + "! Previous version is kept.", ex), logger);
+            return;
+        }
+
+        for (final Consumer<String> changeListener : changeListeners) {
+            try {
+                changeListener.accept(name);
+            } catch (RuntimeException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not inform listener about change of Template[" + name + "]!", ex), logger);
+            }
+        }
+    }
+
+    private static boolean isTemplateFile(final Path file) {
+        return file.getFileName().toString().endsWith(TEMPLATE_FILE_EXTENSION);
+    }
+
+    private static String nameOf(final Path file) {
+        final String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - TEMPLATE_FILE_EXTENSION.length());
+    }
+}
@@ -0,0 +1,252 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.VerificationFailedException;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates that uris referenced by display content are reachable.
+ * <p>
+ * Validations run asynchronously and use lightweight probes: file uris are checked for existence,
+ * http uris are probed by a HEAD request with a fallback to a single byte range request, and all other uris are opened and closed right away.
+ * Results are cached, valid ones for a longer and invalid ones for a shorter time, and concurrent validations of the same uri share a single probe.
+ * If the cache grows beyond its limit, expired results are removed first and afterwards the oldest ones.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class UriValidator {
+
+    /**
+     * Defines how a validation request uses the result cache.
+     */
+    public enum Mode {
+        /**
+         * Cached results are used if not expired.
+         */
+        CACHED,
+        /**
+         * The uri is probed again and the cache is refreshed.
+         */
+        FRESH,
+        /**
+         * The uri is not validated at all.
+         */
+        SKIP
+    }
+
+    public static final long DEFAULT_VALID_TTL = 300000;
+    public static final long DEFAULT_INVALID_TTL = 10000;
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final int PROBE_TIMEOUT = 3000;
+
+    private final long validTtl;
+    private final long invalidTtl;
+    private final int maxEntries;
+    private final Map<String, Validation> validationMap;
+    private final AtomicLong validationCounter;
+
+    public UriValidator() {
+        this(DEFAULT_VALID_TTL, DEFAULT_INVALID_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param validTtl   time in milliseconds a valid result is cached.
+     * @param invalidTtl time in milliseconds an invalid result is cached.
+     * @param maxEntries the maximal amount of cached results.
+     */
+    public UriValidator(final long validTtl, final long invalidTtl, final int maxEntries) {
+        this.validTtl = validTtl;
+        this.invalidTtl = invalidTtl;
+        this.maxEntries = maxEntries;
+        this.validationMap = new ConcurrentHashMap<>();
+        this.validationCounter = new AtomicLong();
+    }
+
+    /**
+     * Validates all given uris in parallel.
+     *
+     * @param uris the uris to validate.
+     * @param mode the cache mode.
+     *
+     * @return a future which is completed as soon as all uris are validated, or completed exceptionally with a {@link VerificationFailedException} if any is invalid.
+     */
+    public CompletableFuture<Void> validate(final Collection<String> uris, final Mode mode) {
+        if (mode == Mode.SKIP || uris.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<?>[] futures = new CompletableFuture[uris.size()];
+        int i = 0;
+        for (final String uri : uris) {
+            futures[i++] = validate(uri, mode);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Validates the given uri.
+     *
+     * @param uri  the uri to validate.
+     * @param mode the cache mode.
+     *
+     * @return a future which is completed as soon as the uri is validated, or completed exceptionally with a {@link VerificationFailedException} if it is invalid.
+     */
+    public CompletableFuture<Void> validate(final String uri, final Mode mode) {
+        if (mode == Mode.SKIP) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Validation validation = validationMap.compute(uri, (key, cachedValidation) -> {
+            if (mode == Mode.CACHED && cachedValidation != null && !cachedValidation.isExpired()) {
+                return cachedValidation;
+            }
+            return new Validation(validationCounter.incrementAndGet());
+        });
+
+        // only the creator of a validation starts its probe.
+        if (validation.started.compareAndSet(false, true)) {
+            cleanup();
+            CompletableFuture.runAsync(() -> {
+                try {
+                    probe(uri);
+                    validation.expiry = System.currentTimeMillis() + validTtl;
+                    validation.future.complete(null);
+                } catch (VerificationFailedException ex) {
+                    validation.expiry = System.currentTimeMillis() + invalidTtl;
+                    validation.future.completeExceptionally(ex);
+                }
+            }, GlobalCachedExecutorService::execute);
+        }
+        return validation.future.copy();
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        validationMap.clear();
+    }
+
+    private void cleanup() {
+        if (validationMap.size() <= maxEntries) {
+            return;
+        }
+        validationMap.values().removeIf(Validation::isExpired);
+
+        final int overflow = validationMap.size() - maxEntries;
+        if (overflow <= 0) {
+            return;
+        }
+        final List<Map.Entry<String, Validation>> validationEntries = new ArrayList<>(validationMap.entrySet());
+        validationEntries.sort(Comparator.comparingLong(entry -> entry.getValue().sequenceNumber));
+        for (final Map.Entry<String, Validation> validationEntry : validationEntries.subList(0, Math.min(overflow, validationEntries.size()))) {
+            validationMap.remove(validationEntry.getKey(), validationEntry.getValue());
+        }
+    }
+
+    private static void probe(final String uri) throws VerificationFailedException {
+        try {
+            final URL url = new URL(uri);
+            switch (url.getProtocol()) {
+                case "file":
+                    if (!new File(new URI(uri)).exists()) {
+                        throw new CouldNotPerformException("File does not exist!");
+                    }
+                    return;
+                case "http":
+                case "https":
+                    probeHttp(url);
+                    return;
+                default:
+                    final URLConnection connection = url.openConnection();
+                    connection.setConnectTimeout(PROBE_TIMEOUT);
+                    connection.setReadTimeout(PROBE_TIMEOUT);
+                    connection.getInputStream().close();
+            }
+        } catch (Exception ex) {
+            throw new VerificationFailedException("URI[" + uri + "] is not valid!", ex);
+        }
+    }
+
+    private static void probeHttp(final URL url) throws IOException, CouldNotPerformException {
+        int responseCode = request(url, "HEAD");
+
+        // some servers do not support head requests, so only the first byte is requested instead.
+        if (responseCode == HttpURLConnection.HTTP_BAD_METHOD || responseCode == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+            responseCode = request(url, "GET");
+        }
+        if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            throw new CouldNotPerformException("Server responded with code " + responseCode + "!");
+        }
+    }
+
+    private static int request(final URL url, final String method) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(PROBE_TIMEOUT);
+            connection.setReadTimeout(PROBE_TIMEOUT);
+            connection.setInstanceFollowRedirects(true);
+            if ("GET".equals(method)) {
+                connection.setRequestProperty("Range", "bytes=0-0");
+            }
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static class Validation {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final long sequenceNumber;
+        private volatile long expiry = Long.MAX_VALUE;
+
+        private Validation(final long sequenceNumber) {
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiry;
+        }
+    }
+}
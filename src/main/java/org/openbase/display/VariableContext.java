@@ -0,0 +1,98 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.NotAvailableException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of template variables which is optionally layered over a parent context.
+ * <p>
+ * Variables of a context shadow the ones of its parent. Because contexts are never modified after creation,
+ * a request specific context can be layered over the shared global one and rendered on any thread without synchronization.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public final class VariableContext {
+
+    /**
+     * A context without any variables.
+     */
+    public static final VariableContext EMPTY = new VariableContext("empty", Collections.emptyMap(), null);
+
+    private final String name;
+    private final Map<String, String> variables;
+    private final VariableContext parent;
+
+    private VariableContext(final String name, final Map<String, String> variables, final VariableContext parent) {
+        this.name = name;
+        this.variables = variables;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a new context containing the given variables which is layered over this one.
+     *
+     * @param name      the name of the new context used for error reporting.
+     * @param variables the variables of the new context, the map is copied.
+     *
+     * @return the new context.
+     */
+    public VariableContext layer(final String name, final Map<String, String> variables) {
+        return new VariableContext(name, Collections.unmodifiableMap(new HashMap<>(variables)), this);
+    }
+
+    /**
+     * @return the name of this context.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Resolves the given variable by this context or one of its parents.
+     *
+     * @param key the name of the variable.
+     *
+     * @return the value of the variable.
+     *
+     * @throws NotAvailableException is thrown if the variable is not defined.
+     */
+    public String getValue(final String key) throws NotAvailableException {
+        for (VariableContext context = this; context != null; context = context.parent) {
+            final String value = context.variables.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        throw new NotAvailableException("Variable[" + key + "] of " + this);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + name + "]";
+    }
+}
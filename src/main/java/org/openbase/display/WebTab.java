@@ -22,65 +22,84 @@ package org.openbase.display;
  * #L%
  */
 
-import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.concurrent.Worker;
-import javafx.concurrent.Worker.State;
 import javafx.scene.Node;
-import javafx.scene.layout.StackPane;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebErrorEvent;
 import javafx.scene.web.WebEvent;
 import javafx.scene.web.WebView;
-import org.apache.commons.io.FileUtils;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InvalidStateException;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
-import org.openbase.jul.schedule.GlobalCachedExecutorService;
-import org.openbase.jul.schedule.SyncObject;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.CookieManager;
-import java.util.ArrayList;
-import java.util.UUID;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 import static org.openbase.display.DisplayView.logger;
 
 /**
  * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
  */
-public class WebTab {
+public class WebTab implements DisplayTab {
+
+    /**
+     * Rough estimation of the memory used by an empty web view and its engine.
+     */
+    private static final long WEB_VIEW_BASE_WEIGHT = 4 * 1024 * 1024;
+
+    /**
+     * Rough estimation of the memory used by a single dom node including its layout and render objects.
+     */
+    private static final long DOM_NODE_WEIGHT = 1024;
+
+    private static final String DOM_NODE_COUNT_SCRIPT = "document.getElementsByTagName('*').length";
+    private static final String DECODED_IMAGE_SIZE_SCRIPT = "(function() {"
+            + " var size = 0;"
+            + " for (var i = 0; i < document.images.length; i++) {"
+            + "  size += document.images[i].naturalWidth * document.images[i].naturalHeight * 4;"
+            + " }"
+            + " return size;"
+            + "})()";
 
-    private final static SyncObject displayTaskLock = new SyncObject("displayTaskLock");
-    private static Future<Void> displayTask;
     private final WebView webView;
-    private final StackPane mainStackPane;
-    private final File userDirectory;
-    private final SyncObject contentLoaderLock = new SyncObject("ContentLoaderLock");
-    private Worker.State contentLoadersState = State.READY;
+    private final DisplaySwitcher displaySwitcher;
+    private volatile CompletableFuture<Void> loadFuture = CompletableFuture.completedFuture(null);
+    private volatile long loadGeneration;
     private String content;
-    private int contentHash;
+    private volatile ContentKey contentKey;
+    private RenderedTemplate renderedTemplate;
+    private volatile long weight = WEB_VIEW_BASE_WEIGHT;
+    private volatile boolean displayed;
 
-    public WebTab(int contentHash, final StackPane mainStackPane) {
-        this.contentHash = contentHash;
-        this.mainStackPane = mainStackPane;
+    /**
+     * @param contentKey        the key of the content this tab is created for, might be null for blank tabs.
+     * @param displaySwitcher   the switcher used to bring this tab to the front.
+     * @param userDataDirectory the user data directory shared by all tabs of this process, see {@link CacheDirectory}.
+     */
+    public WebTab(final ContentKey contentKey, final DisplaySwitcher displaySwitcher, final File userDataDirectory) {
+        this.contentKey = contentKey;
+        this.displaySwitcher = displaySwitcher;
         this.webView = newWebView();
-        this.userDirectory = new File(new File(FileUtils.getTempDirectory(), "generic-display"), UUID.randomUUID().toString());
-        this.webView.getEngine().setUserDataDirectory(userDirectory);
+        this.webView.getEngine().setUserDataDirectory(userDataDirectory);
+        this.webView.parentProperty().addListener((observable, oldParent, newParent) -> {
+            displayed = newParent != null && webView.isVisible();
+        });
+        this.webView.visibleProperty().addListener((observable, wasVisible, visible) -> {
+            displayed = visible && webView.getParent() != null;
+        });
         webView.getEngine().getLoadWorker().stateProperty().addListener((observable, oldValue, newValue) -> {
-            synchronized (contentLoaderLock) {
-                contentLoadersState = newValue;
-                switch (newValue) {
-                    case SUCCEEDED:
-                    case READY:
-                        contentLoaderLock.notifyAll();
-                    default:
-                        // do nothing
-                }
+            switch (newValue) {
+                case SUCCEEDED:
+                    loadFuture.complete(null);
+                    break;
+                case FAILED:
+                    loadFuture.completeExceptionally(new CouldNotPerformException("Could not load content!", webView.getEngine().getLoadWorker().getException()));
+                    break;
+                default:
+                    // canceled loads are handled by the load which replaces them.
             }
         });
     }
@@ -111,39 +130,124 @@ public class WebTab {
         return webView;
     }
 
-    public void updateContextHash(final int content) {
-        this.contentHash = content;
+    @Override
+    public Node getNode() {
+        return webView;
     }
 
-    public int getContentHash() {
-        return contentHash;
+    /**
+     * Assigns the tab to the given content.
+     *
+     * @param contentKey the key of the content or null if the tab is not assigned to any content.
+     */
+    public void updateContentKey(final ContentKey contentKey) {
+        this.contentKey = contentKey;
+    }
+
+    @Override
+    public ContentKey getContentKey() {
+        return contentKey;
     }
 
     public WebEngine getEngine() {
         return webView.getEngine();
     }
 
-    public void shutdown() {
+    /**
+     * @return the memory cost of this tab estimated during the last {@link #estimateWeight()} call.
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Estimates the memory cost of this tab out of the payload size, the amount of dom nodes and the size of all decoded images.
+     * Needs to be called from the fx application thread after the content is loaded.
+     *
+     * @return the estimated weight in bytes.
+     */
+    public long estimateWeight() {
+        long estimatedWeight = WEB_VIEW_BASE_WEIGHT;
+        if (content != null) {
+            estimatedWeight += content.length() * 2L;
+        }
         try {
-            FileUtils.deleteDirectory(userDirectory);
-        } catch (IOException ex) {
-            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not cleanup user dir!", ex), logger);
+            estimatedWeight += ((Number) webView.getEngine().executeScript(DOM_NODE_COUNT_SCRIPT)).longValue() * DOM_NODE_WEIGHT;
+            estimatedWeight += ((Number) webView.getEngine().executeScript(DECODED_IMAGE_SIZE_SCRIPT)).longValue();
+        } catch (RuntimeException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not estimate weight of " + contentKey + "!", ex), logger);
+        }
+        weight = estimatedWeight;
+        return weight;
+    }
+
+    /**
+     * @return true if the web view of this tab is currently part of the scene graph and visible.
+     */
+    public boolean isDisplayed() {
+        return displayed;
+    }
+
+    /**
+     * Unloads the content of this tab to release the memory held by the web engine. The tab itself stays usable.
+     * Needs to be called from the fx application thread.
+     */
+    public void clear() {
+        contentKey = null;
+        content = null;
+        weight = WEB_VIEW_BASE_WEIGHT;
+        displaySwitcher.release(this);
+        webView.getEngine().getLoadWorker().cancel();
+        startLoading();
+        webView.getEngine().load("about:blank");
+    }
+
+    /**
+     * Releases the content of this tab. The content is kept if the tab is currently displayed, so the screen is not cleared.
+     * Needs to be called from the fx application thread.
+     */
+    public void dispose() {
+        contentKey = null;
+        content = null;
+        weight = WEB_VIEW_BASE_WEIGHT;
+        displaySwitcher.release(this);
+        if (!displayed) {
+            webView.getEngine().getLoadWorker().cancel();
+            startLoading();
+            webView.getEngine().load(null);
         }
     }
 
+    /**
+     * Stops the web engine of this tab for good, including the displayed content, so the shared user data directory is not used anymore.
+     * Needs to be called from the fx application thread.
+     */
+    public void shutdown() {
+        contentKey = null;
+        content = null;
+        renderedTemplate = null;
+        displaySwitcher.release(this);
+        webView.getEngine().getLoadWorker().cancel();
+        startLoading();
+        webView.getEngine().load(null);
+    }
+
     /**
      * Loads a Web page into this engine. This method starts asynchronous
      * loading and returns immediately.
      *
      * @param url    URL of the web page to load
      * @param reload forces to reload the tab
+     *
+     * @return a future which is completed as soon as the tab is displayed.
      */
-    public void load(final String url, final boolean reload) {
+    public CompletableFuture<Void> load(final String url, final boolean reload) {
         if (reload || !url.equals(this.content)) {
+            startLoading();
             webView.getEngine().load(url);
             this.content = url;
         }
-        displayTab();
+        return displayTab();
     }
 
     /**
@@ -155,30 +259,23 @@ public class WebTab {
      * @param content the html content to display
      * @param reload  forces to reload the tab
      *
+     * @return a future which is completed as soon as the tab is displayed.
+     *
      * @throws org.openbase.jul.exception.CouldNotPerformException
      */
-    public void loadContent(final String content, final boolean reload) throws CouldNotPerformException {
+    public CompletableFuture<Void> loadContent(final String content, final boolean reload) throws CouldNotPerformException {
         try {
             if (content == null) {
                 throw new NotAvailableException("Content");
             }
 
             if (reload || !content.equals(this.content)) {
-                // load new content and display after loading content.
-                webView.getEngine().getLoadWorker().stateProperty().addListener(new ChangeListener<Worker.State>() {
-                    @Override
-                    public void changed(ObservableValue<? extends Worker.State> observable, Worker.State oldValue, Worker.State newValue) {
-                        if (newValue != Worker.State.SUCCEEDED) {
-                            return;
-                        }
-                        displayTab();
-                    }
-                });
+                // load new content, the display request below is bound to its load future.
+                startLoading();
                 webView.getEngine().loadContent(content);
                 this.content = content;
-            } else {
-                displayTab();
             }
+            return displayTab();
 
         } catch (CouldNotPerformException ex) {
             throw new CouldNotPerformException("Could not load web content!", ex);
@@ -196,62 +293,144 @@ public class WebTab {
      * @param content     the html content to display
      * @param contentType
      * @param reload      forces to reload the tab
+     *
+     * @return a future which is completed as soon as the tab is displayed.
      */
-    public void loadContent(final String content, final String contentType, final boolean reload) {
+    public CompletableFuture<Void> loadContent(final String content, final String contentType, final boolean reload) {
         if (reload || !content.equals(this.content)) {
+            startLoading();
             webView.getEngine().loadContent(content, contentType);
             this.content = content;
         }
-        displayTab();
+        return displayTab();
     }
 
-    public void displayTab() {
-        synchronized (displayTaskLock) {
-            // cancel loading tabs
-            if (displayTask != null && !displayTask.isDone()) {
-                displayTask.cancel(true);
-            }
+    /**
+     * Loads the given URL into this tab without bringing the tab to the front.
+     * This method starts asynchronous loading and returns immediately.
+     *
+     * @param url URL of the web page to load
+     *
+     * @return a future which is completed as soon as the content is loaded.
+     */
+    public CompletableFuture<Void> preload(final String url) {
+        if (!url.equals(this.content)) {
+            startLoading();
+            webView.getEngine().load(url);
+            this.content = url;
+        }
+        return loadFuture.copy();
+    }
+
+    /**
+     * Loads the given HTML content into this tab without bringing the tab to the front.
+     * This method starts asynchronous loading and returns immediately.
+     *
+     * @param content the html content to load
+     *
+     * @return a future which is completed as soon as the content is loaded.
+     */
+    public CompletableFuture<Void> preloadContent(final String content) {
+        return preloadContent(content, false);
+    }
 
-            displayTask = GlobalCachedExecutorService.submit(() -> {
-                try {
-                    waitForContent();
-                    Platform.runLater(() -> {
-
-                        // skip if already shown
-                        if (mainStackPane.getChildren().contains(webView)) {
-                            return;
-                        }
-
-                        // display
-                        mainStackPane.getChildren().add(webView);
-                        webView.toFront();
-
-                        // remove other background views to increase performance
-                        for (final Node node : new ArrayList<>(mainStackPane.getChildren())) {
-                            if (node == webView) {
-                                continue;
-                            }
-                            mainStackPane.getChildren().remove(node);
-                        }
-                    });
-                    return null;
-                } catch (CouldNotPerformException ex) {
-                    throw new CouldNotPerformException("Could not display content!", ex);
-                }
-            });
+    /**
+     * Loads the given HTML content into this tab without bringing the tab to the front.
+     * This method starts asynchronous loading and returns immediately.
+     *
+     * @param content the html content to load
+     * @param reload  forces to reload the tab
+     *
+     * @return a future which is completed as soon as the content is loaded.
+     */
+    public CompletableFuture<Void> preloadContent(final String content, final boolean reload) {
+        if (reload || !content.equals(this.content)) {
+            startLoading();
+            webView.getEngine().loadContent(content);
+            this.content = content;
         }
+        return loadFuture.copy();
     }
 
-    private void waitForContent() throws CouldNotPerformException {
-        synchronized (contentLoaderLock) {
-            if (contentLoadersState == State.READY || contentLoadersState == State.SUCCEEDED) {
-                return;
-            }
-            try {
-                contentLoaderLock.wait(10000);
-            } catch (InterruptedException ex) {
-                throw new CouldNotPerformException("Could not wait for content!", ex);
-            }
+    /**
+     * Requests to bring this tab to the front once its content is loaded.
+     * Needs to be called from the fx application thread and returns immediately.
+     *
+     * @return a future which is completed as soon as the tab is displayed, or canceled if a later display request wins.
+     */
+    public CompletableFuture<Void> displayTab() {
+        return displaySwitcher.switchTo(this);
+    }
+
+    /**
+     * Requests to bring this tab to the front once the given future is completed, e.g. a patch of its dom.
+     * Needs to be called from the fx application thread and returns immediately.
+     *
+     * @param readyFuture the future to wait for instead of the load future of this tab.
+     *
+     * @return a future which is completed as soon as the tab is displayed, or canceled if a later display request wins.
+     */
+    public CompletableFuture<Void> displayTab(final CompletableFuture<?> readyFuture) {
+        return displaySwitcher.switchTo(this, readyFuture);
+    }
+
+    /**
+     * @return a future which is completed as soon as the current content of this tab is loaded.
+     */
+    @Override
+    public CompletableFuture<Void> getLoadFuture() {
+        return loadFuture;
+    }
+
+    /**
+     * In contrast to most other methods this one can be called from any thread.
+     *
+     * @return a counter which is incremented whenever this tab starts to load any content, including reloads of the same content.
+     */
+    public long getLoadGeneration() {
+        return loadGeneration;
+    }
+
+    /**
+     * Marks the content of this tab as modified, e.g. because its dom has been patched.
+     * A later load request of the original content reloads the tab instead of reusing the modified one.
+     * Needs to be called from the fx application thread.
+     */
+    public void markContentModified() {
+        content = null;
+        renderedTemplate = null;
+    }
+
+    /**
+     * Needs to be called from the fx application thread.
+     *
+     * @return the template rendering currently shown by this tab, or null if the tab does not show a template.
+     */
+    public RenderedTemplate getRenderedTemplate() {
+        return renderedTemplate;
+    }
+
+    /**
+     * Stores the template rendering currently shown by this tab, so later renderings only need to patch the changed variables.
+     * Any other load of this tab resets the rendering.
+     * Needs to be called from the fx application thread.
+     *
+     * @param renderedTemplate the rendering loaded into or patched onto this tab.
+     */
+    public void updateRenderedTemplate(final RenderedTemplate renderedTemplate) {
+        this.renderedTemplate = renderedTemplate;
+    }
+
+    /**
+     * Prepares the load future for the content which is about to be loaded.
+     * If the replaced content is still loading, its future is reused, so requests still waiting for the replaced content are completed together with the new content.
+     * This way a tab never holds more than one pending load future, no matter how often its content is replaced while loading.
+     */
+    private void startLoading() {
+        renderedTemplate = null;
+        loadGeneration++;
+        if (loadFuture.isDone()) {
+            loadFuture = new CompletableFuture<>();
         }
     }
 }
@@ -0,0 +1,119 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CacheDirectoryTest {
+
+    private File rootDirectory;
+    private CacheDirectory cacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        rootDirectory = Files.createTempDirectory("generic-display-cache").toFile();
+        cacheDirectory = new CacheDirectory(rootDirectory, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cacheDirectory.release();
+        FileUtils.deleteDirectory(rootDirectory);
+    }
+
+    @Test
+    public void testAcquireSlot() throws Exception {
+        final File slotDirectory = cacheDirectory.acquire();
+        assertTrue(slotDirectory.isDirectory());
+        assertEquals(rootDirectory, slotDirectory.getParentFile());
+        assertSame(slotDirectory, cacheDirectory.acquire());
+    }
+
+    @Test
+    public void testSweepsOnlyUnusedOrphans() throws Exception {
+        final File staleOrphan = newOrphan("stale", false);
+        assertTrue(staleOrphan.setLastModified(System.currentTimeMillis() - CacheDirectory.ORPHAN_MAX_AGE * 2));
+        assertTrue(new File(staleOrphan, "data").setLastModified(System.currentTimeMillis() - CacheDirectory.ORPHAN_MAX_AGE * 2));
+        final File recentOrphan = newOrphan("recent", false);
+        final File unlockedOrphan = newOrphan("unlocked", true);
+        final File lockedOrphan = newOrphan("locked", true);
+
+        try (FileChannel channel = new RandomAccessFile(new File(lockedOrphan, ".lock"), "rw").getChannel()) {
+            // simulates a web engine which still uses the directory.
+            assertNotNull(channel.lock());
+            cacheDirectory.acquire();
+        }
+
+        assertFalse(staleOrphan.exists());
+        assertTrue(recentOrphan.exists());
+        assertFalse(unlockedOrphan.exists());
+        assertTrue(lockedOrphan.exists());
+    }
+
+    @Test
+    public void testTrimsWholeEntries() throws Exception {
+        final File unusedSlot = new File(rootDirectory, "slot-1");
+        final File oldStorage = new File(unusedSlot, "localstorage");
+        final File recentStorage = new File(unusedSlot, "http-cache");
+        FileUtils.writeByteArrayToFile(new File(oldStorage, "first.db"), new byte[8192]);
+        FileUtils.writeByteArrayToFile(new File(oldStorage, "second.db"), new byte[8192]);
+        FileUtils.writeByteArrayToFile(new File(recentStorage, "entry"), new byte[8192]);
+        final FileTime oldTime = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        for (final File file : new File[]{new File(oldStorage, "first.db"), new File(oldStorage, "second.db"), oldStorage}) {
+            Files.getFileAttributeView(file.toPath(), BasicFileAttributeView.class).setTimes(oldTime, oldTime, null);
+        }
+
+        cacheDirectory.release();
+        cacheDirectory = new CacheDirectory(rootDirectory, 12000);
+        cacheDirectory.acquire();
+
+        // the old storage is removed as a whole instead of file by file.
+        assertFalse(oldStorage.exists());
+        assertTrue(new File(recentStorage, "entry").exists());
+    }
+
+    private File newOrphan(final String name, final boolean locked) throws Exception {
+        final File orphan = new File(rootDirectory, name);
+        FileUtils.forceMkdir(orphan);
+        FileUtils.writeStringToFile(new File(orphan, "data"), name, "UTF-8");
+        if (locked) {
+            FileUtils.touch(new File(orphan, ".lock"));
+        }
+        return orphan;
+    }
+}
@@ -0,0 +1,185 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a command queue by a manual dispatcher instead of the fx application thread.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CommandQueueTest {
+
+    private static final String SLOT = "slot";
+
+    private List<Runnable> passes;
+    private List<String> executions;
+    private boolean dispatchThread;
+    private CommandQueue commandQueue;
+
+    @Before
+    public void setUp() {
+        passes = new CopyOnWriteArrayList<>();
+        executions = new CopyOnWriteArrayList<>();
+        dispatchThread = false;
+        commandQueue = new CommandQueue(CommandQueue.DEFAULT_CAPACITY, passes::add, () -> dispatchThread);
+    }
+
+    @Test
+    public void testLaterCommandSupersedesPendingOne() throws Exception {
+        final CompletableFuture<String> first = submit(SLOT, CommandQueue.Priority.CONTENT, "first");
+        final CompletableFuture<String> second = submit(SLOT, CommandQueue.Priority.CONTENT, "second");
+        final CompletableFuture<String> unslotted = submit(null, CommandQueue.Priority.CONTENT, "unslotted");
+        dispatch();
+
+        assertSuperseded(first);
+        assertEquals("second", second.get());
+        assertEquals("unslotted", unslotted.get());
+        assertEquals("[second, unslotted]", executions.toString());
+        assertEquals(1, commandQueue.stats().getCoalesced());
+    }
+
+    @Test
+    public void testInlineCommandDoesNotSupersedePendingOne() throws Exception {
+        final CompletableFuture<String> show = submit(SLOT, CommandQueue.Priority.CONTENT, "show");
+
+        // e.g. a close issued on the fx thread, while the show command of a remote caller is still pending.
+        dispatchThread = true;
+        final CompletableFuture<String> hide = submit(SLOT, CommandQueue.Priority.CONTROL, "hide");
+        dispatchThread = false;
+        assertEquals("hide", hide.get());
+
+        dispatch();
+        assertEquals("show", show.get());
+        assertEquals("[hide, show]", executions.toString());
+        assertEquals(0, commandQueue.stats().getCoalesced());
+    }
+
+    @Test
+    public void testLessUrgentCommandDoesNotSupersedeMoreUrgentOne() throws Exception {
+        final CompletableFuture<String> error = submit(SLOT, CommandQueue.Priority.ERROR, "error");
+        final CompletableFuture<String> firstUpdate = submit(SLOT, CommandQueue.Priority.CONTENT, "first update");
+        final CompletableFuture<String> secondUpdate = submit(SLOT, CommandQueue.Priority.CONTENT, "second update");
+        dispatch();
+
+        assertEquals("error", error.get());
+        assertSuperseded(firstUpdate);
+        assertEquals("second update", secondUpdate.get());
+        assertEquals("[error, second update]", executions.toString());
+    }
+
+    @Test
+    public void testMoreUrgentCommandSupersedesLessUrgentOne() throws Exception {
+        final CompletableFuture<String> update = submit(SLOT, CommandQueue.Priority.CONTENT, "update");
+        final CompletableFuture<String> warning = submit(SLOT, CommandQueue.Priority.WARN, "warning");
+        final CompletableFuture<String> error = submit(SLOT, CommandQueue.Priority.ERROR, "error");
+        dispatch();
+
+        assertSuperseded(update);
+        assertSuperseded(warning);
+        assertEquals("error", error.get());
+        assertEquals("[error]", executions.toString());
+        assertEquals(2, commandQueue.stats().getCoalesced());
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitingSubmittersOfSameSlot() throws Exception {
+        commandQueue = new CommandQueue(2, passes::add, () -> dispatchThread);
+        final CompletableFuture<String> firstFiller = submit(null, CommandQueue.Priority.INFO, "first filler");
+        final CompletableFuture<String> secondFiller = submit(null, CommandQueue.Priority.INFO, "second filler");
+
+        // both submitters are blocked because the queue is full and nothing less urgent can be dropped.
+        final List<AtomicReference<CompletableFuture<String>>> futures = new ArrayList<>();
+        final List<Thread> submitters = new ArrayList<>();
+        for (final String name : new String[]{"a", "b"}) {
+            final AtomicReference<CompletableFuture<String>> future = new AtomicReference<>();
+            final Thread submitter = new Thread(() -> future.set(submit(SLOT, CommandQueue.Priority.INFO, name)));
+            submitter.start();
+            futures.add(future);
+            submitters.add(submitter);
+        }
+        while (commandQueue.stats().getDelayed() < 2) {
+            Thread.sleep(1);
+        }
+
+        dispatch();
+        for (final Thread submitter : submitters) {
+            submitter.join();
+        }
+        dispatch();
+
+        assertEquals("first filler", firstFiller.get());
+        assertEquals("second filler", secondFiller.get());
+
+        // the submitter which queued its command last wins, the other one is superseded instead of being lost.
+        int superseded = 0;
+        for (final AtomicReference<CompletableFuture<String>> future : futures) {
+            assertTrue(future.get().isDone());
+            try {
+                assertTrue(executions.contains(future.get().get(1, TimeUnit.SECONDS)));
+            } catch (CommandSupersededException ex) {
+                superseded++;
+            }
+        }
+        assertEquals(1, superseded);
+        assertEquals(3, executions.size());
+        assertEquals(0, commandQueue.stats().getPending());
+    }
+
+    private CompletableFuture<String> submit(final Object slot, final CommandQueue.Priority priority, final String name) {
+        return commandQueue.submit(slot, priority, () -> {
+            executions.add(name);
+            return name;
+        });
+    }
+
+    private void dispatch() {
+        while (!passes.isEmpty()) {
+            passes.remove(0).run();
+        }
+    }
+
+    private static void assertSuperseded(final CompletableFuture<?> future) throws Exception {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("superseded command was executed");
+        } catch (CommandSupersededException ex) {
+            // expected
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof CommandSupersededException);
+        }
+    }
+}
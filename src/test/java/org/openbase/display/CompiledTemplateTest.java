@@ -0,0 +1,135 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.VerificationFailedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class CompiledTemplateTest {
+
+    private static final String MARKUP = "<b class=\"x\">'a' & b</b>";
+    private static final String ESCAPED_MARKUP = "&lt;b class=&quot;x&quot;&gt;&#39;a&#39; &amp; b&lt;/b&gt;";
+
+    private static RenderedTemplate render(final String source, final String... keyValues) throws Exception {
+        final Map<String, String> variables = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            variables.put(keyValues[i], keyValues[i + 1]);
+        }
+        return CompiledTemplate.compile("Test", source).render(VariableContext.EMPTY.layer("test", variables), true);
+    }
+
+    @Test
+    public void testTextIsBoundAndEscaped() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<p>${TEXT}</p>", "TEXT", MARKUP);
+
+        assertEquals("<p><span data-var=\"TEXT\">" + ESCAPED_MARKUP + "</span></p>", renderedTemplate.getHtml());
+        assertEquals(MARKUP, renderedTemplate.getBoundVariables().get("TEXT"));
+        assertTrue(renderedTemplate.getUnboundVariables().isEmpty());
+    }
+
+    @Test
+    public void testTextWithUnbindableNameIsEscaped() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<p>${MY-TEXT}</p>", "MY-TEXT", MARKUP);
+
+        assertEquals("<p>" + ESCAPED_MARKUP + "</p>", renderedTemplate.getHtml());
+        assertEquals(MARKUP, renderedTemplate.getUnboundVariables().get("MY-TEXT"));
+    }
+
+    @Test
+    public void testAttributeIsEscaped() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<img alt=\"${ALT}\" title='${ALT}'>", "ALT", MARKUP);
+
+        assertEquals("<img alt=\"" + ESCAPED_MARKUP + "\" title='" + ESCAPED_MARKUP + "'>", renderedTemplate.getHtml());
+        assertTrue(renderedTemplate.getBoundVariables().isEmpty());
+        assertEquals(MARKUP, renderedTemplate.getUnboundVariables().get("ALT"));
+    }
+
+    @Test
+    public void testCommentIsRaw() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<!-- ${NOTE} --><p>${TEXT}</p>", "NOTE", MARKUP, "TEXT", "a");
+
+        assertEquals("<!-- " + MARKUP + " --><p><span data-var=\"TEXT\">a</span></p>", renderedTemplate.getHtml());
+        assertEquals(MARKUP, renderedTemplate.getUnboundVariables().get("NOTE"));
+    }
+
+    @Test
+    public void testRawTextIsRaw() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<style>p { color: ${COLOR}; }</style><script type=\"text/javascript\">var x = '${X}';</script><p>${TEXT}</p>",
+                "COLOR", "#fff", "X", MARKUP, "TEXT", "a");
+
+        assertEquals("<style>p { color: #fff; }</style><script type=\"text/javascript\">var x = '" + MARKUP + "';</script><p><span data-var=\"TEXT\">a</span></p>", renderedTemplate.getHtml());
+        assertEquals("#fff", renderedTemplate.getUnboundVariables().get("COLOR"));
+        assertEquals(MARKUP, renderedTemplate.getUnboundVariables().get("X"));
+    }
+
+    @Test
+    public void testEscapableRawTextIsEscaped() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<title>${APP}</title><TEXTAREA>${APP}</TEXTAREA>", "APP", MARKUP);
+
+        assertEquals("<title>" + ESCAPED_MARKUP + "</title><TEXTAREA>" + ESCAPED_MARKUP + "</TEXTAREA>", renderedTemplate.getHtml());
+        assertTrue(renderedTemplate.getBoundVariables().isEmpty());
+        assertEquals(MARKUP, renderedTemplate.getUnboundVariables().get("APP"));
+    }
+
+    @Test
+    public void testElementNamePrefixIsNoRawTextElement() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<titles>${TEXT}</titles>", "TEXT", "a");
+
+        assertEquals("<titles><span data-var=\"TEXT\">a</span></titles>", renderedTemplate.getHtml());
+    }
+
+    @Test
+    public void testVariableOfSeveralContextsIsNotBound() throws Exception {
+        final RenderedTemplate renderedTemplate = render("<p title=\"${TEXT}\">${TEXT}</p>", "TEXT", MARKUP);
+
+        assertEquals("<p title=\"" + ESCAPED_MARKUP + "\">" + ESCAPED_MARKUP + "</p>", renderedTemplate.getHtml());
+        assertTrue(renderedTemplate.getBoundVariables().isEmpty());
+        assertEquals(MARKUP, renderedTemplate.getUnboundVariables().get("TEXT"));
+    }
+
+    @Test
+    public void testMissingVariables() throws Exception {
+        final CompiledTemplate compiledTemplate = CompiledTemplate.compile("Test", "<p>${A}${B}${A}</p>");
+        try {
+            compiledTemplate.render(VariableContext.EMPTY, true);
+            fail("missing variables not detected");
+        } catch (NotAvailableException ex) {
+            assertTrue(ex.getMessage().contains("[A, B]"));
+        }
+        assertEquals("<p><span data-var=\"A\"></span><span data-var=\"B\"></span><span data-var=\"A\"></span></p>", compiledTemplate.render(VariableContext.EMPTY, false).getHtml());
+    }
+
+    @Test(expected = VerificationFailedException.class)
+    public void testUnterminatedVariable() throws Exception {
+        CompiledTemplate.compile("Test", "<p>${TEXT</p>");
+    }
+}
@@ -0,0 +1,169 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openbase.type.configuration.EntryType.Entry;
+import org.openbase.type.configuration.MetaConfigType.MetaConfig;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders templates from many threads at once and checks that no rendering sees the variables of another one.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class ConcurrentRenderingTest {
+
+    private static final int THREADS = 16;
+    private static final int RENDERINGS_PER_THREAD = 2000;
+
+    /**
+     * Only a few distinct values per thread, so renderings are served by the render cache as well.
+     */
+    private static final int VALUES_PER_THREAD = 8;
+
+    private static final String TEMPLATE_NAME = "StressView";
+    private static final String TEMPLATE = "<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "    <head><title>${TITLE}</title></head>\n"
+            + "    <body>\n"
+            + "        <h1 class=\"${STYLE}\">${NAME}</h1>\n"
+            + "        <p>${VALUE}</p>\n"
+            + "    </body>\n"
+            + "</html>\n";
+
+    private File templateDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        templateDirectory = Files.createTempDirectory("generic-display-templates").toFile();
+        FileUtils.writeStringToFile(new File(templateDirectory, TEMPLATE_NAME + TemplateRegistry.TEMPLATE_FILE_EXTENSION), TEMPLATE, StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(templateDirectory);
+    }
+
+    @Test(timeout = 120000)
+    public void testConcurrentTemplateRendering() throws Exception {
+        final HTMLLoader htmlLoader = new HTMLLoader(16, templateDirectory);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < RENDERINGS_PER_THREAD; i++) {
+                final String name = "name-" + thread;
+                final String value = "value-" + thread + "-" + (i % VALUES_PER_THREAD);
+                final String style = "style-" + thread;
+                final String title = "title-" + thread + "-" + (i % VALUES_PER_THREAD);
+
+                final MetaConfig.Builder metaConfig = MetaConfig.newBuilder();
+                metaConfig.addEntry(Entry.newBuilder().setKey("NAME").setValue(name));
+                metaConfig.addEntry(Entry.newBuilder().setKey("VALUE").setValue(value));
+                metaConfig.addEntry(Entry.newBuilder().setKey("STYLE").setValue(style));
+                metaConfig.addEntry(Entry.newBuilder().setKey("TITLE").setValue(title));
+
+                final RenderedTemplate renderedTemplate = htmlLoader.loadTemplateView(TEMPLATE_NAME, metaConfig.build(), true).get(10, TimeUnit.SECONDS);
+                assertEquals(TEMPLATE_NAME, renderedTemplate.getTemplateId());
+                assertEquals(name, renderedTemplate.getBoundVariables().get("NAME"));
+                assertEquals(value, renderedTemplate.getBoundVariables().get("VALUE"));
+                assertEquals(style, renderedTemplate.getUnboundVariables().get("STYLE"));
+                assertEquals(title, renderedTemplate.getUnboundVariables().get("TITLE"));
+                assertTrue(renderedTemplate.getHtml().contains(">" + name + "<"));
+                assertTrue(renderedTemplate.getHtml().contains(">" + value + "<"));
+                assertTrue(renderedTemplate.getHtml().contains("class=\"" + style + "\""));
+                assertTrue(renderedTemplate.getHtml().contains("<title>" + title + "</title>"));
+            }
+        });
+
+        final RenderCache.Stats stats = htmlLoader.getRenderCacheStats();
+        assertTrue("render cache never hit: " + stats, stats.getHits() > 0);
+    }
+
+    @Test(timeout = 120000)
+    public void testConcurrentVariableContextLayers() throws Exception {
+        final Map<String, String> globalVariables = new HashMap<>();
+        globalVariables.put("APP", "generic-display");
+        globalVariables.put("NAME", "global");
+        final VariableContext globalContext = VariableContext.EMPTY.layer("global", globalVariables);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < RENDERINGS_PER_THREAD; i++) {
+                final Map<String, String> variables = new HashMap<>();
+                variables.put("NAME", "name-" + thread + "-" + i);
+                final VariableContext context = globalContext.layer("request " + thread, variables);
+
+                // later modifications of the passed map are not visible to the context.
+                variables.put("NAME", "modified");
+
+                assertEquals("name-" + thread + "-" + i, context.getValue("NAME"));
+                assertEquals("generic-display", context.getValue("APP"));
+                assertEquals("global", globalContext.getValue("NAME"));
+            }
+        });
+    }
+
+    private static void runConcurrently(final ThreadTask task) throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int threadId = thread;
+                futures.add(executorService.submit((Callable<Void>) () -> {
+                    startLatch.await();
+                    task.run(threadId);
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (final Future<Void> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask {
+
+        void run(int thread) throws Exception;
+    }
+}
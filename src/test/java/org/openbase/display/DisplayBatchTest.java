@@ -0,0 +1,148 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.display.DisplayBatch.Command;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.InvalidStateException;
+import org.openbase.type.configuration.EntryType.Entry;
+import org.openbase.type.configuration.MetaConfigType.MetaConfig;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DisplayBatchTest {
+
+    /**
+     * Records all invocations and provides the method name as result, except for the error text methods which fail.
+     */
+    private static Display recordingDisplay(final List<String> invocations) {
+        return (Display) Proxy.newProxyInstance(Display.class.getClassLoader(), new Class<?>[]{Display.class}, (proxy, method, args) -> {
+            invocations.add(method.getName() + (args == null ? "" : "(" + args[0] + ")"));
+            final CompletableFuture<Object> future = new CompletableFuture<>();
+            if (method.getName().endsWith("ErrorText")) {
+                future.completeExceptionally(new InvalidStateException("failed " + args[0]));
+            } else if (method.getName().startsWith("get")) {
+                future.complete(method.getName());
+            } else {
+                future.complete(null);
+            }
+            return future;
+        });
+    }
+
+    private static Entry entry(final String key, final String value) {
+        return Entry.newBuilder().setKey(key).setValue(value).build();
+    }
+
+    @Test(timeout = 10000)
+    public void testApplyInOrder() throws Exception {
+        final MetaConfig elementPatch = MetaConfig.newBuilder().addEntry(entry("ELEMENT_ID", "clock")).addEntry(entry("TEXT", "12:00")).build();
+        final MetaConfig batch = new DisplayBatch()
+                .add(Command.SHOW_TEXT, "hello")
+                .add(Command.SET_ELEMENT_TEXT, elementPatch)
+                .add(Command.SET_VISIBLE, true)
+                .add(Command.GET_DISPLAY_STATE)
+                .build();
+
+        final List<String> invocations = new ArrayList<>();
+        final MetaConfig results = DisplayBatch.apply(recordingDisplay(invocations), batch).get(5, TimeUnit.SECONDS);
+
+        assertEquals(4, invocations.size());
+        assertEquals("showText(hello)", invocations.get(0));
+        assertEquals("setElementText(" + elementPatch + ")", invocations.get(1));
+        assertEquals("setVisible(true)", invocations.get(2));
+        assertEquals("getDisplayState", invocations.get(3));
+
+        assertEquals(4, results.getEntryCount());
+        for (final Entry result : results.getEntryList()) {
+            assertEquals(DisplayBatch.KEY_RESULT, result.getKey());
+        }
+        assertEquals("", results.getEntry(0).getValue());
+        assertEquals("getDisplayState", results.getEntry(3).getValue());
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedCommandDoesNotStopBatch() throws Exception {
+        final MetaConfig batch = new DisplayBatch()
+                .add(Command.SHOW_ERROR_TEXT, "broken")
+                .add(Command.SHOW_TEXT, "hello")
+                .build();
+
+        final List<String> invocations = new ArrayList<>();
+        final MetaConfig results = DisplayBatch.apply(recordingDisplay(invocations), batch).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, invocations.size());
+        assertEquals(DisplayBatch.KEY_ERROR, results.getEntry(0).getKey());
+        assertTrue(results.getEntry(0).getValue().contains("broken"));
+        assertEquals(DisplayBatch.KEY_RESULT, results.getEntry(1).getKey());
+    }
+
+    @Test
+    public void testRejectMalformedBatch() {
+        final List<String> invocations = new ArrayList<>();
+        final MetaConfig[] malformedBatches = {
+                MetaConfig.newBuilder().addEntry(entry(DisplayBatch.KEY_ARGUMENT, "hello")).build(),
+                MetaConfig.newBuilder().addEntry(entry(DisplayBatch.KEY_COMMAND, "UNKNOWN")).build(),
+                MetaConfig.newBuilder().addEntry(entry(DisplayBatch.KEY_COMMAND, Command.SHOW_TEXT.name())).build(),
+                MetaConfig.newBuilder().addEntry(entry(DisplayBatch.KEY_COMMAND, Command.SHOW_TEXT.name())).addEntry(entry(DisplayBatch.KEY_ARGUMENT, "hello"))
+                        .addEntry(entry(DisplayBatch.KEY_COMMAND, Command.SHOW_TEXT.name())).build()
+        };
+        for (final MetaConfig malformedBatch : malformedBatches) {
+            try {
+                DisplayBatch.apply(recordingDisplay(invocations), malformedBatch);
+                fail("malformed batch accepted: " + malformedBatch);
+            } catch (CouldNotPerformException ex) {
+                // expected
+            }
+        }
+
+        // a malformed batch is rejected before any command is applied.
+        assertTrue(invocations.isEmpty());
+    }
+
+    @Test
+    public void testRejectWrongArgumentType() {
+        try {
+            new DisplayBatch().add(Command.SHOW_TEXT);
+            fail("missing argument accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            new DisplayBatch().add(Command.PATCH_ELEMENT, MetaConfig.newBuilder().addEntry(entry(DisplayBatch.KEY_COMMAND, Command.CLOSE_ALL.name())).build());
+            fail("reserved key accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
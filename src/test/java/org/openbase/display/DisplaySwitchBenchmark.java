@@ -0,0 +1,144 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Compares the latency between a switch request and the first frame rendered afterwards
+ * for re-attaching the tab view and for toggling the visibility of hot tabs.
+ * <p>
+ * The benchmark cycles through a set of loaded tabs on a visible stage, so every switch brings another cached tab to the front.
+ * It needs a JavaFX toolkit with a display and is started via its main method out of the test classpath; it is not part of the test run.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DisplaySwitchBenchmark {
+
+    private static final int TABS = 4;
+    private static final int WARMUP_SWITCHES = 50;
+    private static final int SWITCHES = 500;
+
+    public static void main(final String[] args) throws Exception {
+        Platform.startup(() -> {
+        });
+        try {
+            final File userDataDirectory = Files.createTempDirectory("generic-display-switch-benchmark").toFile();
+            report("reattach", measure(mainStackPane -> new DisplaySwitcher(mainStackPane), userDataDirectory));
+            report("toggle", measure(mainStackPane -> new DisplaySwitcher(mainStackPane, TABS, 0), userDataDirectory));
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    /**
+     * @return the switch latencies in nanoseconds.
+     */
+    private static long[] measure(final Function<StackPane, DisplaySwitcher> switcherFactory, final File userDataDirectory) throws Exception {
+        final Stage stage = onFxThread(Stage::new);
+        final DisplaySwitcher displaySwitcher = onFxThread(() -> {
+            final StackPane mainStackPane = new StackPane();
+            stage.setScene(new Scene(mainStackPane, 1280, 720));
+            stage.show();
+            return switcherFactory.apply(mainStackPane);
+        });
+
+        final List<WebTab> tabs = new ArrayList<>();
+        for (int i = 0; i < TABS; i++) {
+            final String content = "<html><body style=\"background: hsl(" + (i * 360 / TABS) + ", 50%, 50%)\"><h1>Tab " + i + "</h1></body></html>";
+            final WebTab webTab = onFxThread(() -> new WebTab(ContentKey.of(content), displaySwitcher, userDataDirectory));
+            onFxThread(() -> webTab.preloadContent(content)).get(DisplaySwitcher.CONTENT_LOAD_TIMEOUT, TimeUnit.MILLISECONDS);
+            tabs.add(webTab);
+        }
+
+        final long[] latencies = new long[SWITCHES];
+        for (int i = 0; i < WARMUP_SWITCHES + SWITCHES; i++) {
+            final long latency = switchTo(displaySwitcher, tabs.get(i % TABS));
+            if (i >= WARMUP_SWITCHES) {
+                latencies[i - WARMUP_SWITCHES] = latency;
+            }
+        }
+
+        onFxThread(() -> {
+            tabs.forEach(WebTab::shutdown);
+            stage.close();
+            return null;
+        });
+        return latencies;
+    }
+
+    /**
+     * Requests the switch and waits for the next pulse after the switch was performed.
+     */
+    private static long switchTo(final DisplaySwitcher displaySwitcher, final WebTab webTab) throws Exception {
+        final CompletableFuture<Long> latencyFuture = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            final long requestTime = System.nanoTime();
+            displaySwitcher.switchTo(webTab).thenRun(() -> new AnimationTimer() {
+                @Override
+                public void handle(final long now) {
+                    stop();
+                    latencyFuture.complete(System.nanoTime() - requestTime);
+                }
+            }.start());
+        });
+        return latencyFuture.get(1, TimeUnit.MINUTES);
+    }
+
+    private static void report(final String strategy, final long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.println(String.format("%-8s switches: %d, mean: %.2fms, median: %.2fms, p95: %.2fms, max: %.2fms",
+                strategy,
+                latencies.length,
+                Arrays.stream(latencies).average().orElse(0) / 1e6,
+                latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.95)] / 1e6,
+                latencies[latencies.length - 1] / 1e6));
+    }
+
+    private static <V> V onFxThread(final Callable<V> callable) throws Exception {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future.get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,155 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.application.Platform;
+import javafx.scene.layout.StackPane;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openbase.jul.exception.InvalidStateException;
+import org.openbase.jul.exception.NotAvailableException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * The patch tests need a JavaFX toolkit and are skipped if none can be started, e.g. on a headless machine.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class DomPatcherTest {
+
+    private static final String CONTENT = "<html><body><div id=\"message\">initial</div><span data-var=\"NAME\">initial</span></body></html>";
+
+    private static Throwable toolkitFailure;
+
+    @BeforeClass
+    public static void startToolkit() {
+        try {
+            Platform.startup(() -> {
+            });
+        } catch (IllegalStateException ex) {
+            // toolkit is already running
+        } catch (Throwable ex) {
+            toolkitFailure = ex;
+        }
+    }
+
+    @Test
+    public void testVariableSelector() {
+        assertEquals("[data-var=\"NAME\"]", DomPatcher.variableSelector("NAME"));
+        assertEquals("[data-var=\"a\\\"]b\"]", DomPatcher.variableSelector("a\"]b"));
+        assertEquals("[data-var=\"a\\\\b\"]", DomPatcher.variableSelector("a\\b"));
+        assertEquals("[data-var=\"a\\a b\"]", DomPatcher.variableSelector("a\nb"));
+    }
+
+    @Test
+    public void testJavaScriptString() {
+        assertEquals("'it\\'s'", DomPatcher.toJavaScriptString("it's"));
+        assertEquals("'a\\\\b\\nc'", DomPatcher.toJavaScriptString("a\\b\nc"));
+        assertEquals("'\\u003c/script>'", DomPatcher.toJavaScriptString("</script>"));
+    }
+
+    @Test(timeout = 60000)
+    public void testPatchVariables() throws Exception {
+        Assume.assumeNoException("JavaFX toolkit not available", toolkitFailure);
+
+        final DomPatcher domPatcher = new DomPatcher();
+        final WebTab webTab = loadedTab();
+
+        onFxThread(() -> domPatcher.patchVariables(webTab, Collections.singletonMap("NAME", "<b>patched</b>"))).get(10, TimeUnit.SECONDS);
+        assertEquals("<b>patched</b>", onFxThread(() -> webTab.getEngine().executeScript("document.querySelector('[data-var=\"NAME\"]').textContent")));
+
+        // a key which breaks out of the selector does not match anything.
+        final CompletableFuture<Void> injectedFuture = onFxThread(() -> domPatcher.patchVariables(webTab, Collections.singletonMap("NAME\"],#message,[x=\"", "injected")));
+        assertFailure(injectedFuture, NotAvailableException.class);
+        assertEquals("initial", onFxThread(() -> webTab.getEngine().executeScript("document.getElementById('message').textContent")));
+    }
+
+    @Test(timeout = 60000)
+    public void testRejectPatchOfReloadedTab() throws Exception {
+        Assume.assumeNoException("JavaFX toolkit not available", toolkitFailure);
+
+        final DomPatcher domPatcher = new DomPatcher();
+        final WebTab webTab = loadedTab();
+
+        // the patch is queued before the reload of the same content starts, but applied afterwards.
+        final CompletableFuture<Void> patchFuture = onFxThread(() -> {
+            final CompletableFuture<Void> future = domPatcher.setElementText(webTab, "message", "patched");
+            webTab.preloadContent(CONTENT, true);
+            return future;
+        });
+        assertFailure(patchFuture, InvalidStateException.class);
+    }
+
+    @Test(timeout = 60000)
+    public void testRejectPatchOfReplacedContent() throws Exception {
+        Assume.assumeNoException("JavaFX toolkit not available", toolkitFailure);
+
+        final DomPatcher domPatcher = new DomPatcher();
+        final WebTab webTab = loadedTab();
+
+        final CompletableFuture<Void> patchFuture = onFxThread(() -> {
+            final CompletableFuture<Void> future = domPatcher.setElementText(webTab, "message", "patched");
+            webTab.updateContentKey(ContentKey.of("other"));
+            return future;
+        });
+        assertFailure(patchFuture, InvalidStateException.class);
+    }
+
+    private static WebTab loadedTab() throws Exception {
+        final File userDataDirectory = Files.createTempDirectory("generic-display-patch").toFile();
+        final WebTab webTab = onFxThread(() -> new WebTab(ContentKey.of("test"), new DisplaySwitcher(new StackPane()), userDataDirectory));
+        onFxThread(() -> webTab.preloadContent(CONTENT)).get(10, TimeUnit.SECONDS);
+        return webTab;
+    }
+
+    private static void assertFailure(final CompletableFuture<?> future, final Class<? extends Throwable> causeClass) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("patch has been applied");
+        } catch (ExecutionException ex) {
+            assertTrue("unexpected failure " + ex.getCause(), causeClass.isInstance(ex.getCause()));
+        }
+    }
+
+    private static <V> V onFxThread(final Callable<V> callable) throws Exception {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future.get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,81 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openbase.type.configuration.EntryType.Entry;
+import org.openbase.type.configuration.MetaConfigType.MetaConfig;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class HTMLLoaderTest {
+
+    private static final String TEMPLATE_NAME = "LogoView";
+
+    private File templateDirectory;
+    private HTMLLoader htmlLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        templateDirectory = Files.createTempDirectory("generic-display-templates").toFile();
+        FileUtils.writeStringToFile(new File(templateDirectory, TEMPLATE_NAME + TemplateRegistry.TEMPLATE_FILE_EXTENSION), "<html><body><img src=\"${LOGO_IMAGE}\"></body></html>", StandardCharsets.UTF_8);
+        htmlLoader = new HTMLLoader(0, templateDirectory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        htmlLoader.getTemplateRegistry().shutdown();
+        FileUtils.deleteDirectory(templateDirectory);
+    }
+
+    @Test(timeout = 30000)
+    public void testImageKeysAreValidated() throws Exception {
+        final File logo = new File(templateDirectory, "logo.png");
+        FileUtils.writeByteArrayToFile(logo, new byte[]{0});
+        final RenderedTemplate renderedTemplate = htmlLoader.loadTemplateView(TEMPLATE_NAME, logoConfig(logo), true).get(10, TimeUnit.SECONDS);
+        assertTrue(renderedTemplate.getHtml().contains(logo.toURI().toString()));
+
+        try {
+            htmlLoader.loadTemplateView(TEMPLATE_NAME, logoConfig(new File(templateDirectory, "missing.png")), true).get(10, TimeUnit.SECONDS);
+            fail("missing image passed the validation");
+        } catch (ExecutionException ex) {
+            // expected
+        }
+    }
+
+    private static MetaConfig logoConfig(final File logo) {
+        return MetaConfig.newBuilder().addEntry(Entry.newBuilder().setKey("LOGO_IMAGE").setValue(logo.toURI().toString())).build();
+    }
+}
@@ -0,0 +1,146 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openbase.jul.exception.VerificationFailedException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class ImagePipelineTest {
+
+    private static final long MAX_DISK_SIZE = 64 * 1024 * 1024;
+
+    private File sourceDirectory;
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        sourceDirectory = Files.createTempDirectory("generic-display-images").toFile();
+        cacheDirectory = Files.createTempDirectory("generic-display-image-cache").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(sourceDirectory);
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    @Test(timeout = 30000)
+    public void testDownscaleLargeImage() throws Exception {
+        final String uri = writeImage("large.jpg", "jpg", 2000, 1000, BufferedImage.TYPE_INT_RGB);
+        final ImagePipeline imagePipeline = new ImagePipeline(cacheDirectory, MAX_DISK_SIZE);
+
+        final String preparedUri = get(imagePipeline.prepare(uri, 200, 200, false));
+        assertNotEquals(uri, preparedUri);
+        final File preparedImage = new File(new URI(preparedUri));
+        assertEquals(cacheDirectory, preparedImage.getParentFile());
+
+        final BufferedImage image = ImageIO.read(preparedImage);
+        assertEquals(200, image.getWidth());
+        assertEquals(100, image.getHeight());
+
+        // a repeated request is served by the cache.
+        assertEquals(preparedUri, get(imagePipeline.prepare(uri, 200, 200, false)));
+
+        // the disk cache survives a restart.
+        assertEquals(preparedUri, get(new ImagePipeline(cacheDirectory, MAX_DISK_SIZE).prepare(uri, 200, 200, false)));
+    }
+
+    @Test(timeout = 30000)
+    public void testKeepFittingImage() throws Exception {
+        final String uri = writeImage("small.png", "png", 100, 50, BufferedImage.TYPE_INT_ARGB);
+        final ImagePipeline imagePipeline = new ImagePipeline(cacheDirectory, MAX_DISK_SIZE);
+
+        final File preparedImage = new File(new URI(get(imagePipeline.prepare(uri, 200, 200, false))));
+        assertEquals(cacheDirectory, preparedImage.getParentFile());
+        assertArrayEquals(Files.readAllBytes(new File(sourceDirectory, "small.png").toPath()), Files.readAllBytes(preparedImage.toPath()));
+    }
+
+    @Test(timeout = 30000)
+    public void testPassThroughUndecodableImage() throws Exception {
+        final File file = new File(sourceDirectory, "image.svg");
+        FileUtils.writeStringToFile(file, "<svg xmlns=\"http://www.w3.org/2000/svg\"/>", "UTF-8");
+        final String uri = file.toURI().toString();
+
+        assertEquals(uri, get(new ImagePipeline(cacheDirectory, MAX_DISK_SIZE).prepare(uri, 200, 200, false)));
+    }
+
+    @Test(timeout = 30000)
+    public void testRejectMissingImage() throws Exception {
+        final String uri = new File(sourceDirectory, "missing.png").toURI().toString();
+        try {
+            get(new ImagePipeline(cacheDirectory, MAX_DISK_SIZE).prepare(uri, 200, 200, false));
+            fail("missing image has been prepared");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof VerificationFailedException);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testTrimDiskCache() throws Exception {
+        final String firstUri = writeImage("first.png", "png", 100, 100, BufferedImage.TYPE_INT_ARGB);
+        final String secondUri = writeImage("second.png", "png", 100, 100, BufferedImage.TYPE_INT_ARGB);
+        final long imageSize = new File(sourceDirectory, "first.png").length();
+
+        // only one of both images fits into the disk cache.
+        final ImagePipeline imagePipeline = new ImagePipeline(cacheDirectory, imageSize + imageSize / 2);
+        final File firstImage = new File(new URI(get(imagePipeline.prepare(firstUri, 200, 200, false))));
+        firstImage.setLastModified(System.currentTimeMillis() - 60000);
+        final File secondImage = new File(new URI(get(imagePipeline.prepare(secondUri, 200, 200, false))));
+
+        assertFalse(firstImage.exists());
+        assertTrue(secondImage.exists());
+    }
+
+    private String writeImage(final String name, final String format, final int width, final int height, final int type) throws Exception {
+        final BufferedImage image = new BufferedImage(width, height, type);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, 0xff000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        final File file = new File(sourceDirectory, name);
+        assertTrue(ImageIO.write(image, format, file));
+        return file.toURI().toString();
+    }
+
+    private static String get(final CompletableFuture<String> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,119 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class RenderCacheTest {
+
+    private static RenderedTemplate rendering(final String templateId) {
+        return new RenderedTemplate(templateId, "<html>" + templateId + "</html>", Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    private static RenderCache.Key key(final String templateId, final String value) {
+        return RenderCache.key(templateId, Collections.singletonMap("VALUE", value), true);
+    }
+
+    @Test
+    public void testKeyNormalizesVariableOrder() {
+        final Map<String, String> variables = new LinkedHashMap<>();
+        variables.put("A", "1");
+        variables.put("B", "2");
+        final Map<String, String> reversedVariables = new LinkedHashMap<>();
+        reversedVariables.put("B", "2");
+        reversedVariables.put("A", "1");
+
+        assertEquals(RenderCache.key("Info", variables, true), RenderCache.key("Info", reversedVariables, true));
+        assertEquals(RenderCache.key("Info", variables, true).hashCode(), RenderCache.key("Info", reversedVariables, true).hashCode());
+        assertNotEquals(RenderCache.key("Info", variables, true), RenderCache.key("Info", variables, false));
+        assertNotEquals(RenderCache.key("Info", variables, true), RenderCache.key("Other", variables, true));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        final RenderCache renderCache = new RenderCache(2);
+        final RenderedTemplate rendering = rendering("Info");
+
+        assertNull(renderCache.get(key("Info", "a")));
+        renderCache.put(key("Info", "a"), rendering);
+        assertSame(rendering, renderCache.get(key("Info", "a")));
+
+        final RenderCache.Stats stats = renderCache.stats();
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        final RenderCache renderCache = new RenderCache(2);
+        renderCache.put(key("Info", "a"), rendering("a"));
+        renderCache.put(key("Info", "b"), rendering("b"));
+
+        // touch a, so b is the least recently used rendering.
+        assertNotNull(renderCache.get(key("Info", "a")));
+        renderCache.put(key("Info", "c"), rendering("c"));
+
+        assertNotNull(renderCache.get(key("Info", "a")));
+        assertNull(renderCache.get(key("Info", "b")));
+        assertNotNull(renderCache.get(key("Info", "c")));
+        assertEquals(2, renderCache.stats().getSize());
+        assertEquals(1, renderCache.stats().getEvictions());
+    }
+
+    @Test
+    public void testDisabledCache() {
+        final RenderCache renderCache = new RenderCache(0);
+        renderCache.put(key("Info", "a"), rendering("a"));
+
+        assertNull(renderCache.get(key("Info", "a")));
+        assertEquals(0, renderCache.stats().getSize());
+    }
+
+    @Test
+    public void testInvalidateTemplate() {
+        final RenderCache renderCache = new RenderCache(10);
+        renderCache.put(key("Info", "a"), rendering("a"));
+        renderCache.put(key("Info", "b"), rendering("b"));
+        renderCache.put(key("Other", "a"), rendering("c"));
+
+        renderCache.invalidate("Info");
+        assertNull(renderCache.get(key("Info", "a")));
+        assertNull(renderCache.get(key("Info", "b")));
+        assertNotNull(renderCache.get(key("Other", "a")));
+        assertEquals(2, renderCache.stats().getEvictions());
+
+        renderCache.clear();
+        assertNull(renderCache.get(key("Other", "a")));
+        assertEquals(3, renderCache.stats().getEvictions());
+    }
+}
@@ -0,0 +1,92 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class RenderedTemplateTest {
+
+    private static RenderedTemplate rendering(final String templateId, final Map<String, String> boundVariables, final Map<String, String> unboundVariables) {
+        return new RenderedTemplate(templateId, templateId + boundVariables + unboundVariables, boundVariables, unboundVariables);
+    }
+
+    private static Map<String, String> variables(final String... keyValues) {
+        final Map<String, String> variables = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            variables.put(keyValues[i], keyValues[i + 1]);
+        }
+        return variables;
+    }
+
+    @Test
+    public void testDiffChangedBoundVariables() {
+        final RenderedTemplate previous = rendering("Info", variables("TITLE", "a", "TEXT", "b"), variables("COLOR", "red"));
+        final RenderedTemplate next = rendering("Info", variables("TITLE", "a", "TEXT", "c"), variables("COLOR", "red"));
+
+        assertEquals(Collections.singletonMap("TEXT", "c"), next.diff(previous));
+        assertEquals(Collections.singletonMap("TEXT", "b"), previous.diff(next));
+    }
+
+    @Test
+    public void testDiffOfSameRenderingIsEmpty() {
+        final RenderedTemplate previous = rendering("Info", variables("TITLE", "a"), variables());
+        final RenderedTemplate next = rendering("Info", variables("TITLE", "a"), variables());
+
+        assertEquals(Collections.emptyMap(), next.diff(previous));
+    }
+
+    @Test
+    public void testDiffRequiresReload() {
+        final RenderedTemplate rendering = rendering("Info", variables("TITLE", "a"), variables("COLOR", "red"));
+
+        assertNull(rendering.diff(null));
+        assertNull(rendering.diff(rendering("Other", variables("TITLE", "a"), variables("COLOR", "red"))));
+        assertNull(rendering.diff(rendering("Info", variables("TITLE", "a"), variables("COLOR", "blue"))));
+        assertNull(rendering.diff(rendering("Info", variables("TITLE", "a", "TEXT", "b"), variables("COLOR", "red"))));
+        assertNull(rendering.diff(rendering("Info", variables("HEADLINE", "a"), variables("COLOR", "red"))));
+    }
+
+    @Test
+    public void testRenderingKey() {
+        final RenderedTemplate rendering = rendering("Info", variables("TITLE", "a", "TEXT", "b"), variables("COLOR", "red"));
+
+        assertEquals(rendering.getRenderingKey(), rendering("Info", variables("TEXT", "b", "TITLE", "a"), variables("COLOR", "red")).getRenderingKey());
+        assertNotEquals(rendering.getRenderingKey(), rendering("Info", variables("TITLE", "a", "TEXT", "c"), variables("COLOR", "red")).getRenderingKey());
+
+        // a value moved between bound and unbound variables is a different rendering.
+        assertNotEquals(rendering("Info", variables("A", "x"), variables()).getRenderingKey(), rendering("Info", variables(), variables("A", "x")).getRenderingKey());
+
+        // length prefixes keep keys and values apart.
+        assertNotEquals(rendering("Info", variables("AB", "c"), variables()).getRenderingKey(), rendering("Info", variables("A", "Bc"), variables()).getRenderingKey());
+        assertEquals(RenderedTemplate.templateKey("Info"), rendering.getTemplateKey());
+    }
+}
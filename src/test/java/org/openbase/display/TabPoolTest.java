@@ -0,0 +1,434 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class TabPoolTest {
+
+    private AtomicInteger createdTabs;
+    private TabPool<String, Tab> tabPool;
+
+    @Before
+    public void setUp() {
+        createdTabs = new AtomicInteger();
+        tabPool = newTabPool(3);
+    }
+
+    private TabPool<String, Tab> newTabPool(final int capacity) {
+        return newTabPool(capacity, 0);
+    }
+
+    private TabPool<String, Tab> newTabPool(final int capacity, final long maxWeight) {
+        return new TabPool<>(capacity, maxWeight, Tab::getWeight, key -> {
+            createdTabs.incrementAndGet();
+            return new Tab(key);
+        }, Tab::assign, Tab::isDisplayed);
+    }
+
+    @Test
+    public void testAcquireReturnsAssignedTab() {
+        final Tab tab = tabPool.acquire("a");
+        assertEquals("a", tab.key);
+        assertSame(tab, tabPool.acquire("a"));
+        assertSame(tab, tabPool.get("a"));
+        assertEquals(1, createdTabs.get());
+        assertEquals(1, tabPool.stats().getHits());
+        assertEquals(1, tabPool.stats().getMisses());
+    }
+
+    @Test
+    public void testRecyclesLeastRecentlyUsedTab() {
+        final Tab tabA = tabPool.acquire("a");
+        tabPool.acquire("b");
+        tabPool.acquire("c");
+
+        // a becomes the most recently used tab, so b is the eldest one
+        tabPool.acquire("a");
+        final Tab tabD = tabPool.acquire("d");
+
+        assertEquals(3, createdTabs.get());
+        assertEquals("d", tabD.key);
+        assertNull(tabPool.get("b"));
+        assertSame(tabA, tabPool.get("a"));
+        assertEquals(3, tabPool.stats().getSize());
+        assertEquals(1, tabPool.stats().getEvictions());
+
+        // touch counts as access as well, so c is recycled next
+        tabPool.touch("a");
+        tabPool.acquire("e");
+        assertNull(tabPool.get("c"));
+        assertNotNull(tabPool.get("a"));
+        assertNotNull(tabPool.get("d"));
+    }
+
+    @Test
+    public void testGetDoesNotCountAsAccess() {
+        tabPool.acquire("a");
+        tabPool.acquire("b");
+        tabPool.acquire("c");
+        tabPool.get("a");
+        tabPool.acquire("d");
+        assertNull(tabPool.get("a"));
+    }
+
+    @Test
+    public void testLowestTierIsRecycledFirst() {
+        tabPool.acquire("high", TabPool.Priority.HIGH);
+        tabPool.acquire("normal", TabPool.Priority.NORMAL);
+        tabPool.acquire("low", TabPool.Priority.LOW);
+
+        tabPool.acquire("next", TabPool.Priority.HIGH);
+        assertNull(tabPool.get("low"));
+
+        tabPool.acquire("last", TabPool.Priority.HIGH);
+        assertNull(tabPool.get("normal"));
+        assertNotNull(tabPool.get("high"));
+    }
+
+    @Test
+    public void testTierQuota() {
+        tabPool = newTabPool(4);
+        tabPool.setQuota(TabPool.Priority.LOW, 1);
+
+        final Tab lowTab = tabPool.acquire("low1", TabPool.Priority.LOW);
+        tabPool.acquire("normal", TabPool.Priority.NORMAL);
+
+        // the quota of the low tier is reached, so its own tab is recycled even though the pool is not full
+        assertSame(lowTab, tabPool.acquire("low2", TabPool.Priority.LOW));
+        assertNull(tabPool.get("low1"));
+        assertNotNull(tabPool.get("normal"));
+        assertEquals(2, tabPool.stats().getSize());
+        assertEquals(2, createdTabs.get());
+    }
+
+    @Test
+    public void testChangePriorityOfAssignedTab() {
+        tabPool.acquire("a", TabPool.Priority.LOW);
+        tabPool.acquire("b", TabPool.Priority.NORMAL);
+        tabPool.acquire("c", TabPool.Priority.NORMAL);
+
+        // a moves into the high tier, so the normal tier is recycled first
+        tabPool.acquire("a", TabPool.Priority.HIGH);
+        tabPool.acquire("d");
+        assertNotNull(tabPool.get("a"));
+        assertNull(tabPool.get("b"));
+        assertEquals(TabPool.Priority.HIGH, findState("a").getPriority());
+    }
+
+    @Test
+    public void testPinnedTabIsNeverRecycled() {
+        final Tab pinnedTab = tabPool.acquire("pinned", TabPool.Priority.LOW);
+        assertTrue(tabPool.pin("pinned"));
+        assertEquals(1, tabPool.stats().getPinned());
+
+        for (int i = 0; i < 10; i++) {
+            tabPool.acquire("content" + i);
+        }
+        assertSame(pinnedTab, tabPool.get("pinned"));
+        assertTrue(findState("pinned").isPinned());
+
+        assertTrue(tabPool.unpin("pinned"));
+        assertEquals(0, tabPool.stats().getPinned());
+        tabPool.acquire("a");
+        tabPool.acquire("b");
+        assertNull(tabPool.get("pinned"));
+    }
+
+    @Test
+    public void testAtLeastOneTabStaysUnpinned() {
+        tabPool.acquire("a");
+        tabPool.acquire("b");
+        tabPool.acquire("c");
+        assertTrue(tabPool.pin("a"));
+        assertTrue(tabPool.pin("b"));
+        assertFalse(tabPool.pin("c"));
+        assertFalse(tabPool.pin("unknown"));
+
+        tabPool.acquire("d");
+        assertNull(tabPool.get("c"));
+        assertNotNull(tabPool.get("a"));
+        assertNotNull(tabPool.get("b"));
+    }
+
+    @Test
+    public void testDisplayedTabIsNeverRecycled() {
+        final Tab displayedTab = tabPool.acquire("displayed", TabPool.Priority.LOW);
+        displayedTab.displayed = true;
+        tabPool.acquire("a");
+        tabPool.acquire("b");
+
+        tabPool.acquire("c");
+        assertSame(displayedTab, tabPool.get("displayed"));
+        assertEquals("displayed", displayedTab.key);
+        assertNull(tabPool.get("a"));
+
+        // the quota of a tier does not recycle the displayed tab either
+        tabPool.setQuota(TabPool.Priority.LOW, 1);
+        tabPool.acquire("low", TabPool.Priority.LOW);
+        assertSame(displayedTab, tabPool.get("displayed"));
+        assertNull(tabPool.get("b"));
+    }
+
+    @Test
+    public void testExceedsCapacityIfAllTabsAreRetained() {
+        final Tab displayedTab = tabPool.acquire("displayed");
+        displayedTab.displayed = true;
+        tabPool.acquire("a");
+        tabPool.acquire("b");
+        tabPool.pin("a");
+        tabPool.pin("b");
+
+        final Tab tab = tabPool.acquire("c");
+        assertNotSame(displayedTab, tab);
+        assertEquals("displayed", displayedTab.key);
+        assertEquals(4, tabPool.stats().getSize());
+        assertEquals(4, createdTabs.get());
+        assertFalse(tabPool.offerIdle(new Tab(null)));
+    }
+
+    @Test
+    public void testShrinkBackToCapacity() {
+        final Tab displayedTab = tabPool.acquire("displayed");
+        displayedTab.displayed = true;
+        tabPool.acquire("a");
+        tabPool.acquire("b");
+        tabPool.pin("a");
+        tabPool.pin("b");
+        tabPool.acquire("c");
+        assertEquals(4, tabPool.stats().getSize());
+
+        // nothing can be removed as long as all other tabs are displayed or pinned.
+        assertTrue(tabPool.shrink("c").isEmpty());
+
+        displayedTab.displayed = false;
+        tabPool.unpin("a");
+        final List<Tab> removedTabs = tabPool.shrink("c");
+        assertEquals(1, removedTabs.size());
+        assertSame(displayedTab, removedTabs.get(0));
+        assertEquals(3, tabPool.stats().getSize());
+        assertNotNull(tabPool.get("c"));
+
+        // the pool fits into its capacity again, so nothing else is removed.
+        assertTrue(tabPool.shrink(null).isEmpty());
+    }
+
+    @Test
+    public void testShrinkEnforcesQuotaAfterPriorityChange() {
+        tabPool = newTabPool(4);
+        tabPool.setQuota(TabPool.Priority.HIGH, 1);
+        tabPool.acquire("high", TabPool.Priority.HIGH);
+        tabPool.acquire("a", TabPool.Priority.NORMAL);
+
+        // a moves into the full high tier, so the other high tab has to go.
+        tabPool.acquire("a", TabPool.Priority.HIGH);
+        final List<Tab> removedTabs = tabPool.shrink("a");
+        assertEquals(1, removedTabs.size());
+        assertEquals("high", removedTabs.get(0).key);
+        assertNull(tabPool.get("high"));
+        assertEquals(TabPool.Priority.HIGH, findState("a").getPriority());
+    }
+
+    @Test
+    public void testWeightBudget() {
+        tabPool = newTabPool(10, 100);
+        final Tab displayedTab = tabPool.acquire("displayed");
+        displayedTab.displayed = true;
+        displayedTab.weight = 40;
+        tabPool.updateWeight("displayed");
+        tabPool.acquire("a").weight = 40;
+        tabPool.updateWeight("a");
+        tabPool.acquire("pinned").weight = 10;
+        tabPool.updateWeight("pinned");
+        tabPool.pin("pinned");
+        assertEquals(90, tabPool.stats().getWeight());
+
+        // neither the weighed, the displayed nor the pinned tab are removed, so a has to go
+        tabPool.acquire("b").weight = 40;
+        final List<Tab> removedTabs = tabPool.updateWeight("b");
+        assertEquals(1, removedTabs.size());
+        assertEquals("a", removedTabs.get(0).key);
+        assertSame(displayedTab, tabPool.get("displayed"));
+        assertNotNull(tabPool.get("pinned"));
+        assertNotNull(tabPool.get("b"));
+        assertEquals(90, tabPool.stats().getWeight());
+
+        // nothing else is removable, so the pool stays above its budget
+        tabPool.get("b").weight = 80;
+        assertTrue(tabPool.updateWeight("b").isEmpty());
+        assertEquals(130, tabPool.stats().getWeight());
+    }
+
+    @Test
+    public void testEvictRemovesPinnedTab() {
+        final Tab tab = tabPool.acquire("a");
+        tabPool.pin("a");
+        assertSame(tab, tabPool.evict("a"));
+        assertNull(tabPool.get("a"));
+        assertEquals(0, tabPool.stats().getPinned());
+        assertNull(tabPool.evict("a"));
+    }
+
+    @Test
+    public void testIdleTabsAreHandedOutBeforeCreatingNewTabs() {
+        final Tab idleTab = new Tab(null);
+        assertTrue(tabPool.offerIdle(idleTab));
+        assertSame(idleTab, tabPool.acquire("a"));
+        assertEquals("a", idleTab.key);
+        assertEquals(0, createdTabs.get());
+
+        tabPool.acquire("b");
+        assertTrue(tabPool.offerIdle(new Tab(null)));
+        assertFalse(tabPool.offerIdle(new Tab(null)));
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        final Tab retainedTab = tabPool.acquire("retained");
+        tabPool.acquire("expired");
+        Thread.sleep(20);
+        tabPool.acquire("used");
+
+        final List<Tab> expiredTabs = tabPool.expire(10, 10, tab -> tab == retainedTab);
+        assertEquals(1, expiredTabs.size());
+        assertEquals("expired", expiredTabs.get(0).key);
+        assertNotNull(tabPool.get("retained"));
+        assertNotNull(tabPool.get("used"));
+    }
+
+    @Test
+    public void testExpireAfterUnpin() throws Exception {
+        tabPool.acquire("pinned");
+        tabPool.pin("pinned");
+        tabPool.acquire("expired");
+        Thread.sleep(20);
+        tabPool.unpin("pinned");
+
+        // the unpinned tab is queued as most recently used, so it counts as used right now as well.
+        final List<Tab> expiredTabs = tabPool.expire(10, 10, tab -> false);
+        assertEquals(1, expiredTabs.size());
+        assertEquals("expired", expiredTabs.get(0).key);
+        assertNotNull(tabPool.get("pinned"));
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        final int capacity = 8;
+        final int threads = 8;
+        final int keys = 32;
+        tabPool = newTabPool(capacity);
+
+        final Set<Tab> tabs = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int offset = i;
+                futures.add(executorService.submit(() -> {
+                    startLatch.await();
+                    for (int j = 0; j < 10000; j++) {
+                        final String key = "content" + ((j + offset) % keys);
+                        final Tab tab = tabPool.acquire(key, TabPool.Priority.values()[j % TabPool.Priority.values().length]);
+                        tabs.add(tab);
+                        assertTrue(tabPool.stats().getSize() <= capacity);
+                    }
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // every tab is created once and recycled afterwards
+        assertEquals(capacity, createdTabs.get());
+        assertEquals(capacity, tabs.size());
+        assertEquals(capacity, tabPool.stats().getSize());
+        assertEquals(threads * 10000, tabPool.stats().getHits() + tabPool.stats().getMisses());
+
+        // every pooled tab is assigned to exactly one key
+        final Map<Tab, Boolean> assignedTabs = new IdentityHashMap<>();
+        for (final TabPool.TabState<String> tabState : tabPool.getTabStates()) {
+            final Tab tab = tabPool.get(tabState.getKey());
+            assertEquals(tabState.getKey(), tab.key);
+            assertNull(assignedTabs.put(tab, true));
+        }
+    }
+
+    private TabPool.TabState<String> findState(final String key) {
+        for (final TabPool.TabState<String> tabState : tabPool.getTabStates()) {
+            if (tabState.getKey().equals(key)) {
+                return tabState;
+            }
+        }
+        fail("No tab assigned to " + key);
+        return null;
+    }
+
+    private static class Tab {
+
+        private String key;
+        private boolean displayed;
+        private long weight;
+
+        private Tab(final String key) {
+            this.key = key;
+        }
+
+        private void assign(final String key) {
+            this.key = key;
+        }
+
+        private boolean isDisplayed() {
+            return displayed;
+        }
+
+        private long getWeight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openbase.display.HTMLLoader.Template;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class TemplateRegistryTest {
+
+    /**
+     * Polling watch services, e.g. the one on macOS, only report changes every few seconds.
+     */
+    private static final long CHANGE_TIMEOUT = 30;
+
+    private File templateDirectory;
+    private TemplateRegistry templateRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        templateDirectory = Files.createTempDirectory("generic-display-templates").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (templateRegistry != null) {
+            templateRegistry.shutdown();
+        }
+        FileUtils.deleteDirectory(templateDirectory);
+    }
+
+    @Test
+    public void testBuiltinTemplates() throws Exception {
+        templateRegistry = new TemplateRegistry(null);
+        for (final Template template : Template.values()) {
+            assertTrue(templateRegistry.getTemplateNames().contains(template.name()));
+            assertTrue(templateRegistry.isCurrent(template.name(), templateRegistry.get(template.name())));
+        }
+    }
+
+    @Test
+    public void testExternalTemplates() throws Exception {
+        writeTemplate("Custom", "<html>${TEXT}</html>");
+        writeTemplate(Template.TEXT_VIEW.name(), "<html>custom ${TEXT}</html>");
+        FileUtils.writeStringToFile(new File(templateDirectory, "notes.txt"), "${IGNORED", StandardCharsets.UTF_8);
+        templateRegistry = new TemplateRegistry(templateDirectory);
+
+        assertEquals("Custom", templateRegistry.get("Custom").getTemplateId());
+        assertFalse(templateRegistry.getTemplateNames().contains("notes"));
+
+        // an external template replaces the built-in one of the same name.
+        assertFalse(templateRegistry.isCurrent(Template.TEXT_VIEW.name(), Template.TEXT_VIEW.getCompiledTemplate()));
+        assertTrue(templateRegistry.get(Template.TEXT_VIEW.name()).render(VariableContext.EMPTY, false).getHtml().startsWith("<html>custom "));
+    }
+
+    @Test(timeout = 120000)
+    public void testWatchTemplateDirectory() throws Exception {
+        writeTemplate("Custom", "<html>${TEXT}</html>");
+        writeTemplate(Template.TEXT_VIEW.name(), "<html>custom ${TEXT}</html>");
+        templateRegistry = new TemplateRegistry(templateDirectory);
+        final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+        templateRegistry.addChangeListener(changes::add);
+        templateRegistry.activate();
+
+        // a changed template is swapped.
+        final CompiledTemplate previous = templateRegistry.get("Custom");
+        writeTemplate("Custom", "<html>changed ${TEXT}</html>");
+        awaitChange(changes, "Custom");
+        assertFalse(templateRegistry.isCurrent("Custom", previous));
+        assertTrue(templateRegistry.get("Custom").render(VariableContext.EMPTY, false).getHtml().startsWith("<html>changed "));
+
+        // a template which fails to compile keeps its previous version.
+        final CompiledTemplate current = templateRegistry.get("Custom");
+        writeTemplate("Custom", "<html>${TEXT</html>");
+        writeTemplate("Marker", "<html></html>");
+        awaitChange(changes, "Marker");
+        assertTrue(templateRegistry.isCurrent("Custom", current));
+
+        // removing an external template restores the built-in one.
+        Files.delete(new File(templateDirectory, Template.TEXT_VIEW.name() + TemplateRegistry.TEMPLATE_FILE_EXTENSION).toPath());
+        awaitChange(changes, Template.TEXT_VIEW.name());
+        assertTrue(templateRegistry.isCurrent(Template.TEXT_VIEW.name(), Template.TEXT_VIEW.getCompiledTemplate()));
+    }
+
+    /**
+     * Replaces the template file atomically, so the watcher never reads a partially written template.
+     */
+    private void writeTemplate(final String name, final String source) throws Exception {
+        final File file = new File(templateDirectory, name + TemplateRegistry.TEMPLATE_FILE_EXTENSION);
+        final File tmpFile = new File(templateDirectory, file.getName() + ".tmp");
+        FileUtils.writeStringToFile(tmpFile, source, StandardCharsets.UTF_8);
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Waits until the listener is informed about a change of the given template.
+     */
+    private static void awaitChange(final BlockingQueue<String> changes, final String name) throws InterruptedException {
+        String change;
+        do {
+            change = changes.poll(CHANGE_TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull("Template[" + name + "] change not reported", change);
+        } while (!change.equals(name));
+    }
+}
@@ -0,0 +1,106 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.display.HTMLLoader.Template;
+import org.openbase.jul.processing.VariableProcessor;
+import org.openbase.jul.processing.VariableStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the text view rendering of the compiled templates with the previous path,
+ * which resolved the variables by scanning the whole template source on every call.
+ * <p>
+ * The benchmark is not part of the test run and can be started via its main method out of the test classpath.
+ * Both paths render the same template with the same variables, including the global screen variables.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TemplateRenderBenchmark {
+
+    private String templateSource;
+    private VariableStore variableStore;
+    private CompiledTemplate compiledTemplate;
+    private VariableContext globalVariableContext;
+    private Map<String, String> variables;
+
+    @Setup
+    public void setup() throws Exception {
+        final Map<String, String> globalVariables = new HashMap<>();
+        globalVariables.put("SCREEN_WIDTH", "1920.0");
+        globalVariables.put("SCREEN_HEIGHT", "1080.0");
+        globalVariables.put("APP", "generic-display");
+
+        variables = new HashMap<>();
+        variables.put("TEXT", "The quick brown fox jumps over the lazy dog.");
+        variables.put("COLOR", "rgb(255,255,255)");
+
+        templateSource = Template.TEXT_VIEW.getTemplate();
+        variableStore = new VariableStore(HTMLLoader.class.getSimpleName());
+        for (final Map.Entry<String, String> variable : globalVariables.entrySet()) {
+            variableStore.store(variable.getKey(), variable.getValue());
+        }
+
+        compiledTemplate = Template.TEXT_VIEW.getCompiledTemplate();
+        globalVariableContext = VariableContext.EMPTY.layer(HTMLLoader.class.getSimpleName(), globalVariables);
+    }
+
+    @Benchmark
+    public String resolveVariables() throws Exception {
+        for (final Map.Entry<String, String> variable : variables.entrySet()) {
+            variableStore.store(variable.getKey(), variable.getValue());
+        }
+        return VariableProcessor.resolveVariables(templateSource, true, variableStore);
+    }
+
+    @Benchmark
+    public RenderedTemplate renderCompiledTemplate() throws Exception {
+        return compiledTemplate.render(globalVariableContext.layer("benchmark", variables), true);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TemplateRenderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,173 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openbase.jul.exception.VerificationFailedException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Probes uris served by a local http server and checks which requests reach the server.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class UriValidatorTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private HttpServer server;
+    private List<String> requests;
+    private Map<String, AtomicInteger> requestCounter;
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new CopyOnWriteArrayList<>();
+        requestCounter = new ConcurrentHashMap<>();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final String method = exchange.getRequestMethod();
+        requests.add(method + " " + path + " " + exchange.getRequestHeaders().getFirst("Range"));
+        requestCounter.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+
+        final int responseCode;
+        if (path.startsWith("/missing")) {
+            responseCode = 404;
+        } else if (path.startsWith("/no-head") && method.equals("HEAD")) {
+            responseCode = 405;
+        } else if (method.equals("GET")) {
+            responseCode = 206;
+        } else {
+            responseCode = 200;
+        }
+        exchange.sendResponseHeaders(responseCode, -1);
+        exchange.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testHeadRequest() throws Exception {
+        final UriValidator uriValidator = new UriValidator();
+        uriValidator.validate(uri("/image.png"), UriValidator.Mode.CACHED).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals("[HEAD /image.png null]", requests.toString());
+    }
+
+    @Test(timeout = 30000)
+    public void testRangeRequestFallback() throws Exception {
+        final UriValidator uriValidator = new UriValidator();
+        uriValidator.validate(uri("/no-head.png"), UriValidator.Mode.CACHED).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals("[HEAD /no-head.png null, GET /no-head.png bytes=0-0]", requests.toString());
+    }
+
+    @Test(timeout = 30000)
+    public void testInvalidUri() throws Exception {
+        final UriValidator uriValidator = new UriValidator();
+        try {
+            uriValidator.validate(uri("/missing.png"), UriValidator.Mode.CACHED).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            fail("missing uri passed the validation");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof VerificationFailedException);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testResultExpiry() throws Exception {
+        final long ttl = 500;
+        final UriValidator uriValidator = new UriValidator(ttl, ttl, UriValidator.DEFAULT_MAX_ENTRIES);
+
+        validateQuietly(uriValidator, "/image.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/missing.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/image.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/missing.png", UriValidator.Mode.CACHED);
+        assertEquals(1, requestCount("/image.png"));
+        assertEquals(1, requestCount("/missing.png"));
+
+        validateQuietly(uriValidator, "/image.png", UriValidator.Mode.FRESH);
+        assertEquals(2, requestCount("/image.png"));
+
+        Thread.sleep(ttl * 2);
+        validateQuietly(uriValidator, "/image.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/missing.png", UriValidator.Mode.CACHED);
+        assertEquals(3, requestCount("/image.png"));
+        assertEquals(2, requestCount("/missing.png"));
+    }
+
+    @Test(timeout = 30000)
+    public void testOldestResultsAreEvicted() throws Exception {
+        final UriValidator uriValidator = new UriValidator(UriValidator.DEFAULT_VALID_TTL, UriValidator.DEFAULT_INVALID_TTL, 2);
+
+        validateQuietly(uriValidator, "/first.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/second.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/third.png", UriValidator.Mode.CACHED);
+
+        // only the oldest result was dropped to make room for the third one.
+        validateQuietly(uriValidator, "/second.png", UriValidator.Mode.CACHED);
+        validateQuietly(uriValidator, "/third.png", UriValidator.Mode.CACHED);
+        assertEquals(1, requestCount("/second.png"));
+        assertEquals(1, requestCount("/third.png"));
+
+        validateQuietly(uriValidator, "/first.png", UriValidator.Mode.CACHED);
+        assertEquals(2, requestCount("/first.png"));
+    }
+
+    private void validateQuietly(final UriValidator uriValidator, final String path, final UriValidator.Mode mode) throws Exception {
+        try {
+            uriValidator.validate(uri(path), mode).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            // invalid results are cached as well
+        }
+    }
+
+    private int requestCount(final String path) {
+        final AtomicInteger counter = requestCounter.get(path);
+        return counter == null ? 0 : counter.get();
+    }
+
+    private String uri(final String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,138 @@
+package org.openbase.display;
+
+/*
+ * #%L
+ * GenericDisplay
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import javafx.application.Platform;
+import javafx.scene.layout.StackPane;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replaces the content of a single tab over and over again and checks that nothing piles up per load.
+ * The test needs a JavaFX toolkit and is skipped if none can be started, e.g. on a headless machine.
+ *
+ * @author <a href="mailto:divine@openbase.org">Divine Threepwood</a>
+ */
+public class WebTabSoakTest {
+
+    private static final int LOADS = 100000;
+    private static final int LOADS_PER_FX_TASK = 1000;
+    private static final int WARMUP_LOADS = 10000;
+
+    /**
+     * Each load only waits on one pending load future of the tab, so its dependents are limited to the display switch.
+     */
+    private static final int MAX_LOAD_FUTURE_DEPENDENTS = 2;
+
+    private static final long MAX_HEAP_GROWTH = 64 * 1024 * 1024;
+
+    private static Throwable toolkitFailure;
+
+    @BeforeClass
+    public static void startToolkit() {
+        try {
+            Platform.startup(() -> {
+            });
+        } catch (IllegalStateException ex) {
+            // toolkit is already running
+        } catch (Throwable ex) {
+            toolkitFailure = ex;
+        }
+    }
+
+    @Test(timeout = 600000)
+    public void testRepeatedLoadContentStaysBounded() throws Exception {
+        Assume.assumeNoException("JavaFX toolkit not available", toolkitFailure);
+
+        final File userDataDirectory = Files.createTempDirectory("generic-display-soak").toFile();
+        final DisplaySwitcher displaySwitcher = onFxThread(() -> new DisplaySwitcher(new StackPane()));
+        final WebTab webTab = onFxThread(() -> new WebTab(null, displaySwitcher, userDataDirectory));
+
+        int maxDependents = 0;
+        int maxPendingSwitches = 0;
+        long warmupHeap = 0;
+
+        for (int load = 0; load < LOADS; load += LOADS_PER_FX_TASK) {
+            final int firstLoad = load;
+            final int[] counts = onFxThread(() -> {
+                int dependents = 0;
+                int pendingSwitches = 0;
+                for (int i = firstLoad; i < firstLoad + LOADS_PER_FX_TASK; i++) {
+                    webTab.loadContent("<html><body><h1>" + i + "</h1></body></html>", false);
+                    dependents = Math.max(dependents, webTab.getLoadFuture().getNumberOfDependents());
+                    pendingSwitches = Math.max(pendingSwitches, displaySwitcher.getPendingSwitchCount());
+                }
+                return new int[]{dependents, pendingSwitches};
+            });
+            maxDependents = Math.max(maxDependents, counts[0]);
+            maxPendingSwitches = Math.max(maxPendingSwitches, counts[1]);
+
+            // give the engine a chance to finish some of the loads in between.
+            Thread.sleep(1);
+
+            if (load + LOADS_PER_FX_TASK == WARMUP_LOADS) {
+                warmupHeap = usedHeap();
+            }
+        }
+
+        final CompletableFuture<Void> displayFuture = onFxThread(() -> webTab.loadContent("<html><body>done</body></html>", false));
+        displayFuture.get(DisplaySwitcher.CONTENT_LOAD_TIMEOUT * 2, TimeUnit.MILLISECONDS);
+
+        assertTrue("load future collected " + maxDependents + " dependents", maxDependents <= MAX_LOAD_FUTURE_DEPENDENTS);
+        assertTrue("display switcher collected " + maxPendingSwitches + " pending switches", maxPendingSwitches <= 1);
+        assertEquals(0, (int) onFxThread(() -> webTab.getLoadFuture().getNumberOfDependents()));
+
+        final long heapGrowth = usedHeap() - warmupHeap;
+        assertTrue("heap grew by " + heapGrowth + " bytes", heapGrowth < MAX_HEAP_GROWTH);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static <V> V onFxThread(final Callable<V> callable) throws Exception {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future.get(1, TimeUnit.MINUTES);
+    }
+}